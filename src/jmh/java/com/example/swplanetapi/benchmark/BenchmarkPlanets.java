@@ -0,0 +1,78 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.SwPlanetApiApplication;
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetIndex;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Dataset and application context shared by the benchmarks. Planets are generated deterministically, so
+ * every run of a given size sees the same names, climates and terrains.
+ */
+final class BenchmarkPlanets {
+
+    static final String[] CLIMATES = {"arid", "temperate", "temperate, tropical", "frozen", "murky"};
+    static final String[] TERRAINS = {"desert", "grasslands, mountains", "jungle, rainforests", "tundra, ice caves", "swamp, jungles"};
+
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private BenchmarkPlanets() {
+    }
+
+    static Planet planet(int index) {
+        return new Planet("planet-" + index, CLIMATES[index % CLIMATES.length],
+                TERRAINS[(index / CLIMATES.length) % TERRAINS.length]);
+    }
+
+    static List<Planet> planets(int count) {
+        List<Planet> planets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Planet planet = planet(i);
+            planet.setId((long) i + 1);
+            planets.add(planet);
+        }
+        return planets;
+    }
+
+    /**
+     * Boots the application without a web server against a fresh in-memory H2 database.
+     */
+    static ConfigurableApplicationContext start(String cacheType, String queryMode) {
+        return new SpringApplicationBuilder(SwPlanetApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                // as arguments, so they win over application.properties
+                .run("--spring.main.banner-mode=off",
+                        "--logging.level.root=warn",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=create-drop",
+                        "--spring.cache.type=" + cacheType,
+                        "--planets.query.mode=" + queryMode);
+    }
+
+    /**
+     * Inserts planets 1..count in JDBC batches, bypassing the service so seeding does not warm any cache,
+     * then rebuilds the index the way a restart would.
+     */
+    static void seed(ConfigurableApplicationContext context, int count) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            Planet planet = planet(i);
+            batch.add(new Object[]{planet.getName(), planet.getClimate(), planet.getTerrain()});
+            if (batch.size() == SEED_BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO planets (name, climate, terrain) VALUES (?, ?, ?)", batch);
+                batch.clear();
+            }
+        }
+        context.getBean(PlanetIndex.class).rebuild();
+    }
+}
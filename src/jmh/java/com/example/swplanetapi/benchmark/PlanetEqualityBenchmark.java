@@ -0,0 +1,80 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.domain.Planet;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Planet#equals} against the reflective comparison it replaced, on a pair of planets and on deduplicating
+ * a batch of {@code size} planets, a fifth of them repeated, the way a bulk import would. Before there was no
+ * {@code hashCode}, so deduplication had to scan a list with {@code reflectionEquals}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PlanetEqualityBenchmark {
+
+    private static final String[] EXCLUDED = {"climateLower", "terrainLower", "version", "lastModified"};
+
+    @Param({"1000"})
+    private int size;
+
+    private Planet planet;
+    private Planet same;
+    private List<Planet> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        planet = BenchmarkPlanets.planet(42);
+        // copies, so String.equals cannot shortcut on identity
+        same = new Planet(planet.getId(), new String(planet.getName()), new String(planet.getClimate()),
+                new String(planet.getTerrain()));
+        List<Planet> unique = BenchmarkPlanets.planets(size - size / 5);
+        batch = new ArrayList<>(unique);
+        batch.addAll(unique.subList(0, size / 5));
+    }
+
+    @Benchmark
+    public boolean equals() {
+        return planet.equals(same);
+    }
+
+    @Benchmark
+    public boolean reflectionEquals() {
+        return EqualsBuilder.reflectionEquals(planet, same, EXCLUDED);
+    }
+
+    @Benchmark
+    public int hashCodeOfPlanet() {
+        return planet.hashCode();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int dedupWithHashSet() {
+        Set<Planet> seen = new HashSet<>(batch);
+        return seen.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int dedupWithReflectionEquals() {
+        int unique = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            boolean repeated = false;
+            for (int j = 0; j < i && !repeated; j++) {
+                repeated = EqualsBuilder.reflectionEquals(batch.get(i), batch.get(j), EXCLUDED);
+            }
+            if (!repeated) {
+                unique++;
+            }
+        }
+        return unique;
+    }
+}
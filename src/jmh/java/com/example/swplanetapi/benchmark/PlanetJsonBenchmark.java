@@ -0,0 +1,79 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.web.PlanetJsonSerializer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson on planet lists of the sizes {@code GET /planets} returns, with the same defaults Boot applies to
+ * its {@code ObjectMapper}. {@code mapper} picks how planets are written: {@code bean} is Jackson's reflective
+ * serializer, {@code serializer} the application's {@link PlanetJsonSerializer} and {@code blackbird} the bean
+ * serializer with the Blackbird module. {@code write} streams into a discarding {@code OutputStream} like a
+ * response does, so with {@code -prof gc} its {@code gc.alloc.rate.norm} divided by {@code size} is the
+ * allocation per planet:
+ * <pre>mvn -P benchmark test -Djmh.args="-prof gc PlanetJsonBenchmark.write"</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlanetJsonBenchmark {
+
+    private static final TypeReference<List<Planet>> PLANET_LIST = new TypeReference<>() {
+    };
+
+    @Param({"100", "10000"})
+    private int size;
+    @Param({"bean", "serializer", "blackbird"})
+    private String mapper;
+
+    private ObjectMapper objectMapper;
+    private List<Planet> planets;
+    private byte[] json;
+    // unlike OutputStream.nullOutputStream(), survives the close() at the end of writeValue
+    private final OutputStream response = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("serializer".equals(mapper)) {
+            builder.serializers(new PlanetJsonSerializer());
+        } else if ("blackbird".equals(mapper)) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        planets = BenchmarkPlanets.planets(size);
+        json = objectMapper.writeValueAsBytes(planets);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(planets);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        objectMapper.writeValue(response, planets);
+    }
+
+    @Benchmark
+    public List<Planet> deserialize() throws IOException {
+        return objectMapper.readValue(json, PLANET_LIST);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetCatalogue;
+import com.example.swplanetapi.domain.PlanetNameIndex;
+import com.example.swplanetapi.domain.PlanetRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Autocomplete on {@code size} planets: {@link PlanetNameIndex} by prefix and with one typo allowed, against
+ * what the UI did before, filtering the names of the whole list.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlanetNameSearchBenchmark {
+
+    @Param({"10000"})
+    private int size;
+
+    @Param({"planet-12"})
+    private String prefix;
+
+    private PlanetNameIndex planetNameIndex;
+    private List<Planet> planets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        planets = BenchmarkPlanets.planets(size);
+        PlanetRepository planetRepository = mock(PlanetRepository.class);
+        when(planetRepository.streamAll()).thenReturn(planets.stream());
+        planetNameIndex = new PlanetNameIndex(planetRepository, mock(EntityManager.class),
+                mock(PlatformTransactionManager.class), mock(PlanetCatalogue.class));
+        planetNameIndex.start();
+    }
+
+    @Benchmark
+    public List<Planet> prefix() {
+        return planetNameIndex.search(prefix, 10);
+    }
+
+    @Benchmark
+    public List<Planet> fuzzy() {
+        return planetNameIndex.search(prefix, 1, 10);
+    }
+
+    @Benchmark
+    public List<Planet> filterAllNames() {
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        return planets.stream()
+                .filter(planet -> planet.getName().toLowerCase(Locale.ROOT).startsWith(lower))
+                .limit(10)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link PlanetService} through its Spring proxies against H2 seeded with {@code planets} rows. Run it with
+ * {@code cache=none} to measure the database path and with {@code caffeine} for what clients usually see.
+ * {@code queryMode} is {@code planets.query.mode}: {@code list} runs {@code findAll(Example)} against the database
+ * or a bitmap query on the in-memory index, so {@code -p cache=none} compares the two.
+ * <p>
+ * The default sizes keep a full run short. For catalogue scale pass {@code -p planets=1000000}, with
+ * {@code -jvmArgs -Xmx4g} or so: H2 holds the rows in the same heap, and a {@code list} answers about 40,000 of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlanetServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    private int planets;
+    @Param({"caffeine", "none"})
+    private String cache;
+    @Param({"database", "memory"})
+    private String queryMode;
+
+    private ConfigurableApplicationContext context;
+    private PlanetService planetService;
+    private final AtomicLong created = new AtomicLong();
+
+    @State(Scope.Thread)
+    public static class Lookup {
+        private final SplittableRandom random = new SplittableRandom(42);
+
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkPlanets.start(cache, queryMode);
+        BenchmarkPlanets.seed(context, planets);
+        planetService = context.getBean(PlanetService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Planet> get(Lookup lookup) {
+        return planetService.get((long) lookup.next(planets) + 1);
+    }
+
+    @Benchmark
+    public Optional<Planet> getByName(Lookup lookup) {
+        return planetService.getByName(BenchmarkPlanets.planet(lookup.next(planets)).getName());
+    }
+
+    @Benchmark
+    public List<Planet> list(Lookup lookup) {
+        return planetService.list(BenchmarkPlanets.TERRAINS[lookup.next(BenchmarkPlanets.TERRAINS.length)],
+                BenchmarkPlanets.CLIMATES[lookup.next(BenchmarkPlanets.CLIMATES.length)]);
+    }
+
+    @Benchmark
+    public Planet create() {
+        return planetService.create(new Planet("created-" + created.incrementAndGet(), "arid", "desert"));
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.swplanetapi.benchmark;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.QueryBuilder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Example;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the query-by-example probe that every filtered list starts with.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryBuilderBenchmark {
+
+    private final Planet both = new Planet("Temperate, Tropical", "Jungle, Rainforests");
+    private final Planet climateOnly = new Planet("Arid", null);
+
+    @Benchmark
+    public Example<Planet> makeQueryWithTerrainAndClimate() {
+        return QueryBuilder.makeQuery(both);
+    }
+
+    @Benchmark
+    public Example<Planet> makeQueryWithClimate() {
+        return QueryBuilder.makeQuery(climateOnly);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.swplanetapi.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Planets the reads pick from, and the names the writes create. Names carry a per-run prefix so a run against
+ * a long-lived database does not collide with the previous one.
+ */
+final class Dataset {
+
+    static final String[] CLIMATES = {"arid", "temperate", "temperate, tropical", "frozen", "murky"};
+    static final String[] TERRAINS = {"desert", "grasslands, mountains", "jungle, rainforests", "tundra, ice caves", "swamp, jungles"};
+
+    private final String run = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final List<Long> ids = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final AtomicLong created = new AtomicLong();
+
+    String seedName(int index) {
+        return "seed-" + run + "-" + index;
+    }
+
+    String seedClimate(int index) {
+        return CLIMATES[index % CLIMATES.length];
+    }
+
+    String seedTerrain(int index) {
+        return TERRAINS[(index / CLIMATES.length) % TERRAINS.length];
+    }
+
+    String nextCreatedName() {
+        return "load-" + run + "-" + created.incrementAndGet();
+    }
+
+    void add(long id, String name) {
+        ids.add(id);
+        names.add(name);
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    long randomId(SplittableRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    String randomName(SplittableRandom random) {
+        return names.get(random.nextInt(names.size()));
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.swplanetapi.loadtest;
+
+import com.example.swplanetapi.SwPlanetApiApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MySQLContainer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Open-model HTTP load test of the planets API. Requests are started on a fixed schedule ({@code loadtest.rate}
+ * per second) whether or not earlier ones have returned, and each latency is measured from the moment the
+ * request was due rather than from when it was actually sent. A stall therefore shows up in every request it
+ * delays, not just in the one that hit it (coordinated omission). The service time, measured from the send,
+ * is kept next to it for comparison.
+ * <p>
+ * Exits with status 1 when the corrected p50/p99/p99.9 of all calls or the error rate exceed their limits.
+ */
+public class LoadTest {
+
+    private static final int MAX_IN_FLIGHT = 10_000;
+    private static final int SEED_PAGE_SIZE = 1000;
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LoadTestSettings settings;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Dataset dataset = new Dataset();
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, Recorder> serviceTimes = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+
+    LoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(HIGHEST_LATENCY_MICROS, 3));
+            serviceTimes.put(operation, new Recorder(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        // devtools would relaunch this method in a restart class loader
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        MySQLContainer<?> mysql = null;
+        ConfigurableApplicationContext context = null;
+        boolean passed;
+        try {
+            URI base;
+            if (!settings.url.isEmpty()) {
+                base = URI.create(settings.url);
+            } else {
+                List<String> arguments = new ArrayList<>(List.of("--server.port=0", "--spring.main.banner-mode=off",
+                        "--logging.level.root=warn", "--spring.jpa.hibernate.ddl-auto=create-drop"));
+                if ("mysql".equals(settings.database)) {
+                    mysql = new MySQLContainer<>("mysql:8.0");
+                    mysql.start();
+                    arguments.add("--spring.datasource.url=" + mysql.getJdbcUrl()
+                            + "?useSSL=false&allowPublicKeyRetrieval=true&useCursorFetch=true&rewriteBatchedStatements=true");
+                    arguments.add("--spring.datasource.username=" + mysql.getUsername());
+                    arguments.add("--spring.datasource.password=" + mysql.getPassword());
+                } else {
+                    arguments.addAll(List.of("--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                            "--spring.datasource.username=sa", "--spring.datasource.password="));
+                }
+                settings.appProperties.forEach(property -> arguments.add("--" + property));
+                context = new SpringApplicationBuilder(SwPlanetApiApplication.class).logStartupInfo(false)
+                        .run(arguments.toArray(String[]::new));
+                base = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+            }
+            passed = new LoadTest(settings).run(base);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+            if (mysql != null) {
+                mysql.stop();
+            }
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    boolean run(URI base) throws IOException, InterruptedException {
+        seed(base);
+        System.out.printf("Load test against %s: %d req/s for %s after a %s warmup, %d planets to read%n",
+                base, settings.rate, settings.duration, settings.warmup, dataset.size());
+        if (!settings.appProperties.isEmpty()) {
+            System.out.printf("Application properties: %s%n", String.join(" ", settings.appProperties));
+        }
+        drive(base);
+        return report();
+    }
+
+    /**
+     * Creates {@code loadtest.seed} planets through the batch endpoint, then pages through the table to learn
+     * the ids and names the reads will use.
+     */
+    private void seed(URI base) throws IOException, InterruptedException {
+        if (settings.seed > 0) {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < settings.seed; i++) {
+                body.append(objectMapper.writeValueAsString(Map.of("name", dataset.seedName(i),
+                        "climate", dataset.seedClimate(i), "terrain", dataset.seedTerrain(i)))).append('\n');
+            }
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve("/planets/batch"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding failed with status " + response.statusCode() + ": " + response.body());
+            }
+        }
+        String cursor = "";
+        while (cursor != null && dataset.size() < Math.max(settings.seed, SEED_PAGE_SIZE)) {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                    base.resolve("/planets?limit=" + SEED_PAGE_SIZE + "&cursor=" + cursor)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            for (JsonNode planet : objectMapper.readTree(response.body())) {
+                dataset.add(planet.get("id").asLong(), planet.get("name").asText());
+            }
+            cursor = response.headers().firstValue("X-Next-Cursor").orElse(null);
+        }
+        if (dataset.size() == 0 && (settings.mix.containsKey(Operation.GET) || settings.mix.containsKey(Operation.GET_BY_NAME))) {
+            throw new IllegalStateException("No planets to read, set loadtest.seed or point loadtest.url at a populated instance");
+        }
+    }
+
+    private void drive(URI base) throws InterruptedException {
+        Operation[] wheel = settings.mix.entrySet().stream()
+                .flatMap(entry -> Stream.generate(entry::getKey).limit(entry.getValue()))
+                .toArray(Operation[]::new);
+        SplittableRandom random = new SplittableRandom(42);
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        long interval = TimeUnit.SECONDS.toNanos(1) / settings.rate;
+        long start = System.nanoTime();
+        long measureFrom = start + settings.warmup.toNanos();
+        long end = measureFrom + settings.duration.toNanos();
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // waiting for a slot is part of the latency, the request was due at 'due'
+            inFlight.acquire();
+            Operation operation = wheel[random.nextInt(wheel.length)];
+            HttpRequest request = operation.request(base, dataset, random);
+            long intended = due;
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long completed = System.nanoTime();
+                inFlight.release();
+                if (intended < measureFrom) {
+                    return;
+                }
+                latencies.get(operation).recordValue(Math.min(micros(completed - intended), HIGHEST_LATENCY_MICROS));
+                serviceTimes.get(operation).recordValue(Math.min(micros(completed - sent), HIGHEST_LATENCY_MICROS));
+                if (failure != null || !operation.succeeded(response.statusCode())) {
+                    errors.get(operation).incrementAndGet();
+                }
+            });
+        }
+        inFlight.acquire(MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Prints a summary per operation, writes the corrected percentile distributions as {@code .hgrm} files
+     * (comparable across runs with HdrHistogram's plotter), and checks the limits.
+     */
+    private boolean report() throws IOException {
+        Files.createDirectories(settings.reportDir);
+        Histogram all = new Histogram(HIGHEST_LATENCY_MICROS, 3);
+        long allErrors = 0;
+        System.out.printf("%-8s %9s %7s %9s %9s %9s %9s %18s%n",
+                "call", "count", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "p99 uncorrected");
+        for (Operation operation : settings.mix.keySet()) {
+            Histogram latency = latencies.get(operation).getIntervalHistogram();
+            Histogram serviceTime = serviceTimes.get(operation).getIntervalHistogram();
+            long operationErrors = errors.get(operation).get();
+            all.add(latency);
+            allErrors += operationErrors;
+            System.out.printf("%-8s %9d %7d %9.2f %9.2f %9.2f %9.2f %18.2f%n", operation.key(), latency.getTotalCount(),
+                    operationErrors, millis(latency, 50), millis(latency, 99), millis(latency, 99.9),
+                    latency.getMaxValue() / 1000.0, millis(serviceTime, 99));
+            write(operation.key(), latency);
+        }
+        write("all", all);
+
+        List<String> failures = new ArrayList<>();
+        check(failures, "p50", millis(all, 50), settings.maxP50);
+        check(failures, "p99", millis(all, 99), settings.maxP99);
+        check(failures, "p99.9", millis(all, 99.9), settings.maxP999);
+        double errorRate = all.getTotalCount() == 0 ? 1 : (double) allErrors / all.getTotalCount();
+        if (errorRate > settings.maxErrorRate) {
+            failures.add(String.format("error rate %.4f above %.4f", errorRate, settings.maxErrorRate));
+        }
+        if (failures.isEmpty()) {
+            System.out.println("Load test passed");
+            return true;
+        }
+        System.out.println("Load test failed: " + String.join(", ", failures));
+        return false;
+    }
+
+    private void write(String name, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(settings.reportDir.resolve(name + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static void check(List<String> failures, String percentile, double actualMillis, Duration limit) {
+        double limitMillis = limit.toNanos() / 1_000_000.0;
+        if (actualMillis > limitMillis) {
+            failures.add(String.format("%s %.2f ms above %.2f ms", percentile, actualMillis, limitMillis));
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
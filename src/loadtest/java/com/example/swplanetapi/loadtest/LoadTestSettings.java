@@ -0,0 +1,97 @@
+package com.example.swplanetapi.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Load test parameters, read from {@code loadtest.*} system properties (the {@code loadtest} Maven profile
+ * passes them on, see {@code pom.xml} for the defaults).
+ */
+final class LoadTestSettings {
+
+    /** An already running instance to target; empty to boot the application in this JVM. */
+    final String url;
+    /** {@code h2} or {@code mysql} (Testcontainers), when the application is booted here. */
+    final String database;
+    /**
+     * Application properties for the application booted here, as {@code key=value} separated by {@code ;}, such
+     * as {@code planets.virtual-threads.enabled=true} to compare request threading models.
+     */
+    final List<String> appProperties;
+    /** Requests started per second, whatever the response times. */
+    final int rate;
+    final Duration warmup;
+    final Duration duration;
+    final int seed;
+    final Map<Operation, Integer> mix;
+    final Duration maxP50;
+    final Duration maxP99;
+    final Duration maxP999;
+    final double maxErrorRate;
+    final Path reportDir;
+
+    private LoadTestSettings() {
+        url = System.getProperty("loadtest.url", "");
+        database = System.getProperty("loadtest.database", "h2");
+        appProperties = parseAppProperties(System.getProperty("loadtest.app-properties", ""));
+        rate = Integer.parseInt(System.getProperty("loadtest.rate", "200"));
+        warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT15S"));
+        duration = Duration.parse(System.getProperty("loadtest.duration", "PT60S"));
+        seed = Integer.parseInt(System.getProperty("loadtest.seed", "10000"));
+        mix = parseMix(System.getProperty("loadtest.mix", "create:10,get:50,name:20,list:20"));
+        maxP50 = Duration.parse(System.getProperty("loadtest.max-p50", "PT0.01S"));
+        maxP99 = Duration.parse(System.getProperty("loadtest.max-p99", "PT0.1S"));
+        maxP999 = Duration.parse(System.getProperty("loadtest.max-p999", "PT0.25S"));
+        maxErrorRate = Double.parseDouble(System.getProperty("loadtest.max-error-rate", "0.001"));
+        reportDir = Path.of(System.getProperty("loadtest.report-dir", "target/loadtest"));
+        if (rate <= 0) {
+            throw new IllegalArgumentException("loadtest.rate must be positive");
+        }
+    }
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings();
+    }
+
+    /**
+     * Parses properties such as {@code planets.virtual-threads.enabled=true;planets.query.mode=memory}.
+     */
+    static List<String> parseAppProperties(String value) {
+        List<String> properties = Arrays.stream(value.split(";"))
+                .map(String::trim)
+                .filter(property -> !property.isEmpty())
+                .collect(Collectors.toList());
+        for (String property : properties) {
+            if (property.indexOf('=') <= 0) {
+                throw new IllegalArgumentException("Invalid loadtest.app-properties entry '" + property + "', expected key=value");
+            }
+        }
+        return properties;
+    }
+
+    /**
+     * Parses weights such as {@code create:10,get:50,name:20,list:20}.
+     */
+    static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry '" + entry + "', expected operation:weight");
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                mix.put(Operation.of(parts[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix has no operation with a positive weight");
+        }
+        return mix;
+    }
+}
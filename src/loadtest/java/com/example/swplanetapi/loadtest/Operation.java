@@ -0,0 +1,76 @@
+package com.example.swplanetapi.loadtest;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * The calls the load test mixes, each with the status that counts as a success.
+ */
+enum Operation {
+
+    CREATE("create", 201) {
+        @Override
+        HttpRequest request(URI base, Dataset dataset, SplittableRandom random) {
+            String body = "{\"name\":\"" + dataset.nextCreatedName() + "\",\"climate\":\"" + pick(Dataset.CLIMATES, random)
+                    + "\",\"terrain\":\"" + pick(Dataset.TERRAINS, random) + "\"}";
+            return HttpRequest.newBuilder(base.resolve("/planets"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+    },
+    GET("get", 200) {
+        @Override
+        HttpRequest request(URI base, Dataset dataset, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/planets/" + dataset.randomId(random))).GET().build();
+        }
+    },
+    GET_BY_NAME("name", 200) {
+        @Override
+        HttpRequest request(URI base, Dataset dataset, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/planets/name/" + encode(dataset.randomName(random)))).GET().build();
+        }
+    },
+    LIST("list", 200) {
+        @Override
+        HttpRequest request(URI base, Dataset dataset, SplittableRandom random) {
+            return HttpRequest.newBuilder(base.resolve("/planets?terrain=" + encode(pick(Dataset.TERRAINS, random))
+                    + "&climate=" + encode(pick(Dataset.CLIMATES, random)))).GET().build();
+        }
+    };
+
+    private final String key;
+    private final int expectedStatus;
+
+    Operation(String key, int expectedStatus) {
+        this.key = key;
+        this.expectedStatus = expectedStatus;
+    }
+
+    abstract HttpRequest request(URI base, Dataset dataset, SplittableRandom random);
+
+    String key() {
+        return key;
+    }
+
+    boolean succeeded(int status) {
+        return status == expectedStatus;
+    }
+
+    static Operation of(String key) {
+        return Arrays.stream(values()).filter(operation -> operation.key.equals(key)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation '" + key + "', expected one of create, get, name, list"));
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.swplanetapi.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Binary alternatives to JSON for service-to-service clients, negotiated through {@code Accept}:
+ * {@value MediaType#APPLICATION_CBOR_VALUE} and {@value #APPLICATION_SMILE_VALUE}. Both are written by mappers
+ * built like Boot's JSON one, so they share its modules (the planet serializer among them) and settings.
+ * Spring would otherwise register these formats with plain mappers as soon as the libraries are on the
+ * classpath; the converters declared here take their place, after JSON, which stays the default.
+ * <p>
+ * Servlet stack only: Spring's WebFlux CBOR encoder cannot write streams, so the {@code reactive} profile
+ * stays on JSON and NDJSON.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BinaryFormatsConfig {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    // the builder is a prototype bean, each injection point gets its own copy to set a factory on
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
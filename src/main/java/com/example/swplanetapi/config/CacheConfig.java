@@ -0,0 +1,30 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.PlanetService;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.cache.CacheManagerCustomizer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Turns on the cache proxies used by {@link PlanetService}. Sizes, TTLs and the provider itself come from
+ * the {@code spring.cache.*} properties, so a profile can switch caching off with {@code spring.cache.type=none}.
+ * The cache proxy sits outside the transactional one, so a hit neither begins a transaction nor takes a connection.
+ */
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+
+    /**
+     * Filtered lists are few but much bigger than single planets, so they get their own, smaller bounds.
+     */
+    @Bean
+    public CacheManagerCustomizer<CaffeineCacheManager> planetListsCacheCustomizer(
+            @Value("${planets.cache.lists.spec:maximumSize=500,expireAfterWrite=1m,recordStats}") String spec) {
+        return cacheManager -> cacheManager.registerCustomCache(PlanetService.PLANET_LISTS, Caffeine.from(spec).build());
+    }
+}
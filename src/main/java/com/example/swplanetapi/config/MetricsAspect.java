@@ -0,0 +1,98 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.QueryBuilder;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Example;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Timers of the service and repository layers; HTTP endpoints ({@code http.server.requests}), the Hikari pool,
+ * Hibernate statistics and the caches are bound by Boot.
+ * <ul>
+ *     <li>Classes annotated with {@link Timed} are recorded under the annotation's name, tagged by class and method.
+ *     This advice runs outermost, unlike Micrometer's {@code TimedAspect}, so calls answered from the cache are
+ *     counted too.</li>
+ *     <li>{@code PlanetRepository} calls are recorded as {@value #REPOSITORY_TIMER}, tagged by query method and
+ *     whether it was filtered, so a slow unfiltered scan is not averaged in with indexed lookups. Boot's own
+ *     repository timers cannot see the arguments and are turned off in favour of these.</li>
+ * </ul>
+ */
+@Aspect
+@Component
+@Order(0) // ahead of the cache and transaction interceptors, which run at the lowest precedence
+public class MetricsAspect {
+
+    static final String REPOSITORY_TIMER = "planets.repository";
+
+    private final MeterRegistry meterRegistry;
+    // registering looks the meter up by name and tags on every call, so each one is built once
+    private final Map<List<Object>, Timer> timers = new ConcurrentHashMap<>();
+
+    public MetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("@within(timed) && execution(public * *(..))")
+    public Object timeService(ProceedingJoinPoint joinPoint, Timed timed) throws Throwable {
+        return time(joinPoint, timed.value(), "class", joinPoint.getSignature().getDeclaringTypeName());
+    }
+
+    @Around("this(com.example.swplanetapi.domain.PlanetRepository) && !execution(* java.lang.Object.*(..))")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        return time(joinPoint, REPOSITORY_TIMER, "filtered",
+                String.valueOf(isFiltered(signature.getParameterNames(), joinPoint.getArgs())));
+    }
+
+    /**
+     * A call is filtered when it carries a query-by-example with criteria, or a non-null terrain or climate
+     * parameter (keyset pages).
+     */
+    static boolean isFiltered(String[] parameterNames, Object[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] instanceof Example && QueryBuilder.isFiltered((Example<?>) args[i])) {
+                return true;
+            }
+            boolean filterParameter = parameterNames != null
+                    && ("terrain".equals(parameterNames[i]) || "climate".equals(parameterNames[i]));
+            if (filterParameter && args[i] != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object time(ProceedingJoinPoint joinPoint, String name, String tagKey, String tagValue) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable ex) {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            sample.stop(timer(name, method, tagKey, tagValue, exception));
+        }
+    }
+
+    private Timer timer(String name, Method method, String tagKey, String tagValue, String exception) {
+        return timers.computeIfAbsent(List.of(name, method, tagKey, tagValue, exception), key -> Timer.builder(name)
+                .tag(tagKey, tagValue)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(meterRegistry));
+    }
+}
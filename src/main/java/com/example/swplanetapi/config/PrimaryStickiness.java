@@ -0,0 +1,60 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.ReadFreshness;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Read-your-writes for {@link ReadWriteRoutingDataSource}: after a write the current thread reads from the
+ * primary for {@code planets.datasource.sticky-after-write}, long enough for the replicas to catch up. The
+ * deadline is per thread; the servlet filter of {@link ReplicaRoutingConfig} carries it between a client's
+ * requests in a cookie.
+ * <p>
+ * The instance also remembers its last write, for reads whose result every client shares through a cache
+ * ({@link ReadFreshness#SHARED}): whoever reads, they go to the primary for the same window.
+ */
+public class PrimaryStickiness {
+
+    private final ThreadLocal<Long> primaryUntil = ThreadLocal.withInitial(() -> 0L);
+    private final long windowMillis;
+    private final Clock clock;
+    private volatile long instanceWroteUntil;
+
+    public PrimaryStickiness(Duration window, Clock clock) {
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+    }
+
+    public void wrote() {
+        long until = clock.millis() + windowMillis;
+        primaryUntil.set(until);
+        instanceWroteUntil = until;
+    }
+
+    public boolean isSticky() {
+        return clock.millis() < primaryUntil.get();
+    }
+
+    /**
+     * Whether any thread of this instance wrote within the window.
+     */
+    public boolean instanceWroteRecently() {
+        return clock.millis() < instanceWroteUntil;
+    }
+
+    /**
+     * Epoch millis until which the current thread reads from the primary.
+     */
+    public long primaryUntil() {
+        return primaryUntil.get();
+    }
+
+    public void readFromPrimaryUntil(long epochMillis) {
+        primaryUntil.set(epochMillis);
+    }
+
+    public void reset() {
+        primaryUntil.remove();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.swplanetapi.config;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+
+/**
+ * {@code GET /actuator/queries?limit=n} lists the slowest query shapes, {@code DELETE} starts over.
+ */
+@Endpoint(id = "queries")
+public class QueriesEndpoint {
+
+    private final QueryDiagnostics diagnostics;
+    private final int defaultLimit;
+
+    public QueriesEndpoint(QueryDiagnostics diagnostics, int defaultLimit) {
+        this.diagnostics = diagnostics;
+        this.defaultLimit = defaultLimit;
+    }
+
+    @ReadOperation
+    public List<QueryShape> slowest(@Nullable Integer limit) {
+        return diagnostics.slowest(limit != null ? limit : defaultLimit);
+    }
+
+    @DeleteOperation
+    public void reset() {
+        diagnostics.reset();
+    }
+}
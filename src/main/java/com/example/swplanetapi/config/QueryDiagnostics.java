@@ -0,0 +1,181 @@
+package com.example.swplanetapi.config;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Records every JDBC statement seen by the proxied {@code DataSource}:
+ * <ul>
+ *     <li>per query shape (the SQL with literals and {@code IN} lists collapsed), the count and the total and
+ *     maximum execution time, served as the top-N slowest by the {@code queries} actuator endpoint;</li>
+ *     <li>per request, the number of statements and their time, logged at debug and at warn when the request
+ *     ran more than {@code planets.diagnostics.max-statements-per-request} statements or the same shape
+ *     {@code planets.diagnostics.repeated-statement-threshold} times (the N+1 pattern);</li>
+ *     <li>statements slower than {@code planets.diagnostics.slow-query-threshold}, logged at warn with their
+ *     bound parameters.</li>
+ * </ul>
+ * Times are measured around {@code execute*}, so the rows a streamed result fetches afterwards are not included.
+ */
+public class QueryDiagnostics implements QueryExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryDiagnostics.class);
+
+    /**
+     * Bounds the memory used by shapes; SQL built from user input would otherwise grow the map forever.
+     */
+    static final int MAX_SHAPES = 1000;
+    static final String OTHER_SHAPE = "(other)";
+    static final int MAX_LOGGED_BATCHES = 10;
+
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ConcurrentMap<String, QueryShape> shapes = new ConcurrentHashMap<>();
+    private final ThreadLocal<RequestStatements> request = new ThreadLocal<>();
+    private final long slowQueryMillis;
+    private final int maxStatementsPerRequest;
+    private final int repeatedStatementThreshold;
+
+    public QueryDiagnostics(Duration slowQueryThreshold, int maxStatementsPerRequest, int repeatedStatementThreshold) {
+        this.slowQueryMillis = slowQueryThreshold.toMillis();
+        this.maxStatementsPerRequest = maxStatementsPerRequest;
+        this.repeatedStatementThreshold = repeatedStatementThreshold;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long millis = execInfo.getElapsedTime();
+        RequestStatements current = request.get();
+        for (QueryInfo query : queryInfoList) {
+            String shape = shape(query.getQuery());
+            shapeStats(shape).record(millis);
+            if (current != null) {
+                current.record(shape, millis);
+            }
+            if (millis >= slowQueryMillis) {
+                log.warn("Slow query ({} ms): {} {}", millis, query.getQuery(), parameters(query));
+            }
+        }
+    }
+
+    /**
+     * Starts counting the statements of the current thread's request.
+     */
+    public void beginRequest() {
+        request.set(new RequestStatements());
+    }
+
+    /**
+     * Stops counting and logs what the request did, {@code description} names it in the log.
+     */
+    public void endRequest(String description) {
+        RequestStatements current = request.get();
+        request.remove();
+        if (current == null || current.statements == 0) {
+            return;
+        }
+        Map.Entry<String, Integer> mostRepeated = current.mostRepeated();
+        if (current.statements > maxStatementsPerRequest || mostRepeated.getValue() >= repeatedStatementThreshold) {
+            log.warn("{} ran {} statements in {} ms, the most repeated {} times: {}", description,
+                    current.statements, current.millis, mostRepeated.getValue(), mostRepeated.getKey());
+        } else if (log.isDebugEnabled()) {
+            log.debug("{} ran {} statements in {} ms", description, current.statements, current.millis);
+        }
+    }
+
+    /**
+     * The {@code limit} shapes with the highest maximum time, ties broken by total time.
+     */
+    public List<QueryShape> slowest(int limit) {
+        return shapes.values().stream()
+                .sorted(Comparator.comparingLong(QueryShape::getMaxMillis)
+                        .thenComparingLong(QueryShape::getTotalMillis).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+
+    private QueryShape shapeStats(String shape) {
+        QueryShape stats = shapes.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        return shapes.computeIfAbsent(shapes.size() < MAX_SHAPES ? shape : OTHER_SHAPE, QueryShape::new);
+    }
+
+    /**
+     * Collapses the parts of a statement that vary between calls of the same query: literals become {@code ?},
+     * {@code IN} lists a single {@code ?} and runs of whitespace one space.
+     */
+    static String shape(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        shape = IN_LIST.matcher(shape).replaceAll("in (?)");
+        return WHITESPACE.matcher(shape).replaceAll(" ").trim();
+    }
+
+    /**
+     * The bound parameters of each batch entry in index order, e.g. {@code [[1, Tatooine]]}, cut after
+     * {@value #MAX_LOGGED_BATCHES} entries.
+     */
+    static String parameters(QueryInfo query) {
+        List<List<Object>> batches = new ArrayList<>();
+        for (List<ParameterSetOperation> operations : query.getParametersList()) {
+            if (batches.size() == MAX_LOGGED_BATCHES) {
+                return batches + " and " + (query.getParametersList().size() - MAX_LOGGED_BATCHES) + " more";
+            }
+            Map<Integer, Object> byIndex = new TreeMap<>();
+            for (ParameterSetOperation operation : operations) {
+                Object[] args = operation.getArgs();
+                if (args[0] instanceof Integer) {
+                    boolean setNull = ParameterSetOperation.isSetNullParameterOperation(operation);
+                    byIndex.put((Integer) args[0], setNull || args.length < 2 ? null : args[1]);
+                }
+            }
+            batches.add(new ArrayList<>(byIndex.values()));
+        }
+        return batches.toString();
+    }
+
+    private static class RequestStatements {
+
+        private final Map<String, Integer> executions = new HashMap<>();
+        private int statements;
+        private long millis;
+
+        void record(String shape, long elapsedMillis) {
+            statements++;
+            millis += elapsedMillis;
+            executions.merge(shape, 1, Integer::sum);
+        }
+
+        Map.Entry<String, Integer> mostRepeated() {
+            return executions.entrySet().stream().max(Map.Entry.comparingByValue()).orElseThrow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.swplanetapi.config;
+
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Diagnostics of the SQL sent through the JDBC {@code DataSource}, i.e. by {@code PlanetRepository}, the batch
+ * inserts and the index rebuilds (see {@link QueryDiagnostics}). The pool is wrapped in a datasource-proxy so
+ * statements are timed with their bound parameters, which a Hibernate {@code StatementInspector} never sees.
+ * <p>
+ * Opt-in with {@code planets.diagnostics.enabled=true}; every statement then pays for a map lookup and, while a
+ * request is counted, a thread-local.
+ */
+@Configuration
+@ConditionalOnProperty(name = "planets.diagnostics.enabled", havingValue = "true")
+public class QueryDiagnosticsConfig {
+
+    @Bean
+    public QueryDiagnostics queryDiagnostics(
+            @Value("${planets.diagnostics.slow-query-threshold:200ms}") Duration slowQueryThreshold,
+            @Value("${planets.diagnostics.max-statements-per-request:20}") int maxStatementsPerRequest,
+            @Value("${planets.diagnostics.repeated-statement-threshold:5}") int repeatedStatementThreshold) {
+        return new QueryDiagnostics(slowQueryThreshold, maxStatementsPerRequest, repeatedStatementThreshold);
+    }
+
+    @Bean
+    public QueriesEndpoint queriesEndpoint(QueryDiagnostics queryDiagnostics,
+                                           @Value("${planets.diagnostics.top:20}") int defaultLimit) {
+        return new QueriesEndpoint(queryDiagnostics, defaultLimit);
+    }
+
+    /**
+     * Static, as bean post-processors are created before the other beans; the diagnostics are looked up when
+     * the {@code DataSource} shows up.
+     */
+    @Bean
+    public static BeanPostProcessor queryDiagnosticsDataSourceProxy(ObjectProvider<QueryDiagnostics> diagnostics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource)) {
+                    return bean;
+                }
+                return ProxyDataSourceBuilder.create(beanName, (DataSource) bean)
+                        .listener(diagnostics.getObject())
+                        .build();
+            }
+        };
+    }
+
+    /**
+     * Counts the statements of each request. The rows of a streamed export are read on the async executor after
+     * the request thread returned and are only covered by the per-shape statistics.
+     */
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public OncePerRequestFilter queryDiagnosticsFilter(QueryDiagnostics queryDiagnostics) {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                queryDiagnostics.beginRequest();
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    queryDiagnostics.endRequest(request.getMethod() + " " + request.getRequestURI());
+                }
+            }
+        };
+    }
+}
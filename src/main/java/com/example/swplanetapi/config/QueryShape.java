@@ -0,0 +1,42 @@
+package com.example.swplanetapi.config;
+
+/**
+ * Execution statistics of one query shape since startup or the last reset.
+ */
+public class QueryShape {
+
+    private final String sql;
+    private long count;
+    private long totalMillis;
+    private long maxMillis;
+
+    QueryShape(String sql) {
+        this.sql = sql;
+    }
+
+    synchronized void record(long millis) {
+        count++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0 : (double) totalMillis / count;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.ReadFreshness;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to the replicas, in turn, and everything else to the primary. While
+ * {@link PrimaryStickiness} says the thread wrote recently it reads from the primary too, so it sees its own
+ * writes despite replication lag. So do the reads marked with a {@link ReadFreshness}: those filling shared caches
+ * while the instance wrote recently, and index loads and exports always.
+ * <p>
+ * The transaction's read-only flag is only known once it has begun, so this has to sit behind a
+ * {@code LazyConnectionDataSourceProxy}, which fetches the connection when the first statement runs.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica-";
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final int replicas;
+    private final PrimaryStickiness stickiness;
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, PrimaryStickiness stickiness) {
+        this.replicas = replicas.size();
+        this.stickiness = stickiness;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (!readOnly || replicas == 0 || stickiness.isSticky() || needsPrimary(ReadFreshness.current())) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(nextReplica.getAndIncrement(), replicas);
+    }
+
+    private boolean needsPrimary(ReadFreshness freshness) {
+        return freshness == ReadFreshness.LATEST
+                || freshness == ReadFreshness.SHARED && stickiness.instanceWroteRecently();
+    }
+}
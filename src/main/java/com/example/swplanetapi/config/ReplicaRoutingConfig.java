@@ -0,0 +1,165 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.PlanetsChangedEvent;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas: with {@code planets.datasource.replica-urls} set, read-only transactions ({@code get},
+ * {@code getByName} and the lists of {@code PlanetService}) go to the replicas in turn and everything else to
+ * the {@code spring.datasource.*} primary (see {@link ReadWriteRoutingDataSource}). Exports and the loads of the
+ * in-memory indexes and catalogue are read-only too but read from the primary, see
+ * {@link com.example.swplanetapi.domain.ReadFreshness}. Every database gets its own
+ * Hikari pool, configured by {@code spring.datasource.hikari.*} and reported under its name ({@code primary},
+ * {@code replica-0}, ...) in the {@code hikaricp.*} metrics; replica connections are read-only.
+ * <p>
+ * After a write, the client reads from the primary for {@code planets.datasource.sticky-after-write}: the
+ * deadline is handed back in the {@value #STICKY_COOKIE} cookie and honoured on its next requests. For that
+ * window, reads that fill the planet caches go to the primary whoever makes them, so a lagging replica cannot
+ * put an evicted planet back for every client, the writer included.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "planets.datasource.replica-urls")
+public class ReplicaRoutingConfig {
+
+    static final String STICKY_COOKIE = "planets-primary-until";
+
+    private final PrimaryStickiness stickiness;
+    private final long windowMillis;
+    private final Clock clock;
+    private final List<HikariDataSource> replicaPools = new ArrayList<>();
+
+    public ReplicaRoutingConfig(@Value("${planets.datasource.sticky-after-write:5s}") Duration window,
+                                ObjectProvider<Clock> clock) {
+        this.clock = clock.getIfAvailable(Clock::systemUTC);
+        this.stickiness = new PrimaryStickiness(window, this.clock);
+        this.windowMillis = window.toMillis();
+    }
+
+    @Bean
+    public PrimaryStickiness primaryStickiness() {
+        return stickiness;
+    }
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${planets.datasource.replica-urls}") List<String> replicaUrls,
+                                 @Value("${planets.datasource.replica-username:${spring.datasource.username:}}") String username,
+                                 @Value("${planets.datasource.replica-password:${spring.datasource.password:}}") String password) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        configure(primary, ReadWriteRoutingDataSource.PRIMARY, environment);
+        for (String url : replicaUrls) {
+            HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(url.trim()).username(username).password(password).build();
+            configure(replica, ReadWriteRoutingDataSource.REPLICA + replicaPools.size(), environment);
+            replica.setReadOnly(true);
+            replicaPools.add(replica);
+        }
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, new ArrayList<>(replicaPools), stickiness);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Boot instruments the pool it finds by unwrapping the data source, which is the primary; the replicas are
+     * added here. Taking the data source makes sure the pools exist before the registry binds this.
+     */
+    @Bean
+    public MeterBinder replicaPoolMetrics(DataSource dataSource) {
+        return registry -> replicaPools.stream()
+                .filter(pool -> pool.getMetricsTrackerFactory() == null)
+                .forEach(pool -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+
+    /**
+     * Planet writes publish {@link PlanetsChangedEvent} on the writing thread; the request that wrote also
+     * hands the deadline to its client. Changes made by other instances and only picked up here are not writes
+     * of this one.
+     */
+    @EventListener
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        if (!event.isLocal()) {
+            return;
+        }
+        stickiness.wrote();
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+            if (response != null && !response.isCommitted()) {
+                Cookie cookie = new Cookie(STICKY_COOKIE, String.valueOf(stickiness.primaryUntil()));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, Duration.ofMillis(windowMillis).toSeconds()));
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+    @Bean
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public OncePerRequestFilter primaryStickinessFilter() {
+        return new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                Cookie cookie = WebUtils.getCookie(request, STICKY_COOKIE);
+                if (cookie != null) {
+                    // a client can only make its own reads stickier, and by no more than one window
+                    stickiness.readFromPrimaryUntil(Math.min(parse(cookie.getValue()),
+                            clock.millis() + windowMillis));
+                }
+                try {
+                    filterChain.doFilter(request, response);
+                } finally {
+                    stickiness.reset();
+                }
+            }
+        };
+    }
+
+    private static void configure(HikariDataSource pool, String name, Environment environment) {
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+    }
+
+    private static long parse(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetsChangedEvent;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Hibernate second-level cache for {@link Planet} and query cache for {@code findByName} and
+ * {@code findAll(Example)}, on Ehcache through JCache, turned on by {@code planets.jpa.second-level-cache.enabled}.
+ * A hit skips the SQL round trip altogether, even where the Spring caches of {@code PlanetService} do not apply
+ * (paged lists, lookups inside a transaction).
+ * <p>
+ * Planets are held on heap, at most {@code entity-entries} of them, and past that in {@code off-heap-size} of
+ * off-heap memory when it is above zero; cached query results are bounded by {@code query-entries}. Both expire
+ * after {@code time-to-live}, which bounds how stale they get after writes from other instances. Hits, misses and
+ * puts per region are part of the {@code hibernate.*} statistics.
+ * <p>
+ * Hibernate keeps the caches current after its own writes only; the JDBC batches of {@code PlanetBatchService} and
+ * the R2DBC writes go around it, so every {@link PlanetsChangedEvent} also evicts the planets it names and the
+ * cached query results.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "planets.jpa.second-level-cache.enabled", havingValue = "true")
+public class SecondLevelCacheConfig {
+
+    private static final String QUERY_RESULTS_REGION = RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME;
+    private static final String TIMESTAMPS_REGION = RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME;
+
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    public SecondLevelCacheConfig(ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * A manager of its own, under a unique URI, so contexts sharing a JVM (tests) do not share regions.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${planets.jpa.second-level-cache.entity-entries:10000}") long entityEntries,
+            @Value("${planets.jpa.second-level-cache.query-entries:1000}") long queryEntries,
+            @Value("${planets.jpa.second-level-cache.time-to-live:10m}") Duration timeToLive,
+            @Value("${planets.jpa.second-level-cache.off-heap-size:0MB}") DataSize offHeapSize) {
+        ResourcePoolsBuilder planetPools = ResourcePoolsBuilder.newResourcePoolsBuilder().heap(entityEntries, EntryUnit.ENTRIES);
+        if (offHeapSize.toMegabytes() > 0) {
+            planetPools = planetPools.offheap(offHeapSize.toMegabytes(), MemoryUnit.MB);
+        }
+        org.ehcache.config.Configuration configuration = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(Planet.CACHE_REGION, CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(Object.class, Object.class, planetPools)
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive)))
+                .withCache(QUERY_RESULTS_REGION, CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(queryEntries))
+                        .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive)))
+                // must outlive every cached query result, or results get trusted past the tables' last update
+                .withCache(TIMESTAMPS_REGION, CacheConfigurationBuilder
+                        .newCacheConfigurationBuilder(Object.class, Object.class, ResourcePoolsBuilder.heap(queryEntries)))
+                .build();
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        return provider.getCacheManager(URI.create("urn:planets:l2:" + UUID.randomUUID()), configuration);
+    }
+
+    /**
+     * Regions missing from {@link #hibernateCacheManager} fail the startup instead of being created unbounded.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheProperties(CacheManager hibernateCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        Cache cache = entityManagerFactory.getObject().unwrap(SessionFactory.class).getCache();
+        event.getSaved().forEach(planet -> cache.evictEntityData(Planet.class, planet.getId()));
+        event.getRemovedIds().forEach(id -> cache.evictEntityData(Planet.class, id));
+        cache.evictDefaultQueryRegion();
+    }
+}
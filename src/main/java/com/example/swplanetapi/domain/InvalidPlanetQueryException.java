@@ -0,0 +1,16 @@
+package com.example.swplanetapi.domain;
+
+/**
+ * A planet query the client got wrong, such as a cursor it did not get from us or a filter that cannot be
+ * answered. The API answers it with 400; any other exception is a fault of ours.
+ */
+public class InvalidPlanetQueryException extends RuntimeException {
+
+    public InvalidPlanetQueryException(String message) {
+        super(message);
+    }
+
+    public InvalidPlanetQueryException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
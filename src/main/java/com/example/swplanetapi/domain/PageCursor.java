@@ -0,0 +1,42 @@
+package com.example.swplanetapi.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor for planet listings. It carries the id of the last planet of a page, so the
+ * next page is a seek on the primary key instead of an OFFSET scan.
+ */
+public class PageCursor {
+
+    private static final String PREFIX = "id:";
+
+    private PageCursor() {
+
+    }
+
+    public static String encode(Long lastId) {
+        byte[] raw = (PREFIX + lastId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static long decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPlanetQueryException("Invalid cursor: " + cursor, ex);
+        }
+        if (!raw.startsWith(PREFIX)) {
+            throw new InvalidPlanetQueryException("Invalid cursor: " + cursor);
+        }
+        try {
+            return Long.parseLong(raw.substring(PREFIX.length()));
+        } catch (NumberFormatException ex) {
+            throw new InvalidPlanetQueryException("Invalid cursor: " + cursor, ex);
+        }
+    }
+}
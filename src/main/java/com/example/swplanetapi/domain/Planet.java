@@ -1,15 +1,28 @@
 package com.example.swplanetapi.domain;
 
 import com.example.swplanetapi.jacoco.ExcludeFromJacocoGeneratedReport;
-import org.apache.commons.lang3.builder.EqualsBuilder;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotEmpty;
+import java.time.Instant;
+import java.util.Objects;
 
+// in the second-level cache when planets.jpa.second-level-cache.enabled, see SecondLevelCacheConfig
 @Entity
-@Table(name = "planets")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Planet.CACHE_REGION)
+@Table(name = "planets", indexes = {
+        @Index(name = "idx_planets_terrain_climate", columnList = "terrain_lower, climate_lower"),
+        @Index(name = "idx_planets_climate", columnList = "climate_lower"),
+        // for the catalogue catching up on the writes since its snapshot
+        @Index(name = "idx_planets_last_modified", columnList = "last_modified")})
 public class Planet {
 
+    public static final String CACHE_REGION = "planets";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -22,6 +35,23 @@ public class Planet {
     @Column(nullable = false)
     @NotEmpty()
     private String terrain;
+    // lowercase copies computed by the database, so case-insensitive filters can use the indexes above
+    @JsonIgnore
+    @Column(name = "climate_lower", insertable = false, updatable = false,
+            columnDefinition = "varchar(255) generated always as (lower(climate))")
+    private String climateLower;
+    @JsonIgnore
+    @Column(name = "terrain_lower", insertable = false, updatable = false,
+            columnDefinition = "varchar(255) generated always as (lower(terrain))")
+    private String terrainLower;
+    // bumped on every update, stamps the ETag of GET /planets/{id}; the defaults cover rows inserted with plain SQL
+    @JsonIgnore
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
+    @JsonIgnore
+    @Column(name = "last_modified", columnDefinition = "timestamp(6) default current_timestamp(6)")
+    private Instant lastModified;
 
     public Planet() {
     }
@@ -76,6 +106,44 @@ public class Planet {
         this.terrain = terrain;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now();
+    }
+
+    String getClimateLower() {
+        return climateLower;
+    }
+
+    void setClimateLower(String climateLower) {
+        this.climateLower = climateLower;
+    }
+
+    String getTerrainLower() {
+        return terrainLower;
+    }
+
+    void setTerrainLower(String terrainLower) {
+        this.terrainLower = terrainLower;
+    }
+
     @ExcludeFromJacocoGeneratedReport
     @Override
     public String toString() {
@@ -87,8 +155,32 @@ public class Planet {
                 '}';
     }
 
+    /**
+     * Planets are identified by name, their natural key: unique, required, and known before the id is generated,
+     * so a planet keeps its hash across {@code persist}. Only nameless planets (query probes, invalid input)
+     * compare by value. Getters rather than fields, and {@code instanceof} rather than {@code getClass()}, keep
+     * Hibernate proxies equal to the entities they stand for.
+     */
     @Override
     public boolean equals(Object obj) {
-        return EqualsBuilder.reflectionEquals(obj, this);
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Planet)) {
+            return false;
+        }
+        Planet other = (Planet) obj;
+        if (getName() != null || other.getName() != null) {
+            return Objects.equals(getName(), other.getName());
+        }
+        return Objects.equals(getId(), other.getId()) && Objects.equals(getClimate(), other.getClimate())
+                && Objects.equals(getTerrain(), other.getTerrain())
+                && Objects.equals(getClimateLower(), other.getClimateLower())
+                && Objects.equals(getTerrainLower(), other.getTerrainLower());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getName());
     }
 }
@@ -0,0 +1,43 @@
+package com.example.swplanetapi.domain;
+
+public class PlanetBatchError {
+
+    public enum Reason {
+        INVALID, CONFLICT,
+        /**
+         * The entry is not a planet at all, such as malformed JSON; nothing after it was read.
+         */
+        UNREADABLE
+    }
+
+    private final int index;
+    private final String name;
+    private final Reason reason;
+    private final String message;
+
+    public PlanetBatchError(int index, String name, Reason reason, String message) {
+        this.index = index;
+        this.name = name;
+        this.reason = reason;
+        this.message = message;
+    }
+
+    /**
+     * Zero-based position of the planet in the request body.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.swplanetapi.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlanetBatchResult {
+
+    private int received;
+    private int created;
+    private final List<PlanetBatchError> errors = new ArrayList<>();
+
+    public int getReceived() {
+        return received;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public List<PlanetBatchError> getErrors() {
+        return errors;
+    }
+
+    void received(int count) {
+        received += count;
+    }
+
+    void created(int count) {
+        created += count;
+    }
+
+    void reject(int index, Planet planet, PlanetBatchError.Reason reason, String message) {
+        errors.add(new PlanetBatchError(index, planet == null ? null : planet.getName(), reason, message));
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.swplanetapi.domain;
+
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk ingestion of planets. Entries are validated and written in chunks through plain JDBC batches,
+ * since the IDENTITY id of {@link Planet} keeps Hibernate from batching inserts. Each chunk commits on
+ * its own and a bad entry is reported back instead of failing the whole request. An entry that cannot be read
+ * at all ends the request, since nothing after it can be trusted, but the entries before it are still written and
+ * reported, so the client knows exactly where to resume.
+ */
+@Service
+@Timed(PlanetService.TIMER_NAME)
+public class PlanetBatchService {
+
+    static final String INSERT_SQL = "INSERT INTO planets (name, climate, terrain) VALUES (?, ?, ?)";
+    static final String ROWS_COUNTER = "planets.batch.rows";
+
+    private final PlanetRepository planetRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final Counter createdRows;
+    private final Counter invalidRows;
+    private final Counter conflictingRows;
+
+    public PlanetBatchService(PlanetRepository planetRepository, JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager, Validator validator,
+                              ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+                              @Value("${planets.batch.chunk-size:500}") int chunkSize) {
+        this.planetRepository = planetRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.validator = validator;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.createdRows = meterRegistry.counter(ROWS_COUNTER, "outcome", "created");
+        this.invalidRows = meterRegistry.counter(ROWS_COUNTER, "outcome", "invalid");
+        this.conflictingRows = meterRegistry.counter(ROWS_COUNTER, "outcome", "conflict");
+    }
+
+    /**
+     * Consumes the planets lazily, so the request body never has to fit in memory as a whole. Both lookup
+     * caches are dropped afterwards since any of their cached misses may now exist.
+     */
+    @CacheEvict(cacheNames = {PlanetService.PLANETS_BY_ID, PlanetService.PLANETS_BY_NAME}, allEntries = true)
+    public PlanetBatchResult createAll(Iterator<Planet> planets) {
+        return createAll(planets, stored -> { });
+    }
+
+    /**
+     * Like {@link #createAll(Iterator)}, also handing the planets created by each chunk, as stored and with their
+     * ids, to the listener once the chunk has committed. Nothing is kept for the whole request.
+     */
+    @CacheEvict(cacheNames = {PlanetService.PLANETS_BY_ID, PlanetService.PLANETS_BY_NAME}, allEntries = true)
+    public PlanetBatchResult createAll(Iterator<Planet> planets, Consumer<List<Planet>> storedListener) {
+        PlanetBatchResult result = new PlanetBatchResult();
+        List<Entry> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        String unreadable = null;
+        while (true) {
+            Planet planet;
+            try {
+                if (!planets.hasNext()) {
+                    break;
+                }
+                planet = planets.next();
+            } catch (RuntimeException ex) {
+                // the request body could not be parsed at this entry
+                unreadable = ex.getMessage();
+                break;
+            }
+            chunk.add(new Entry(index++, planet));
+            if (chunk.size() == chunkSize) {
+                insertChunk(chunk, result, storedListener);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, result, storedListener);
+        }
+        if (unreadable != null) {
+            result.received(1);
+            result.reject(index, null, PlanetBatchError.Reason.UNREADABLE, unreadable);
+        }
+        count(result);
+        return result;
+    }
+
+    private void insertChunk(List<Entry> chunk, PlanetBatchResult result, Consumer<List<Planet>> storedListener) {
+        result.received(chunk.size());
+        List<Entry> valid = new ArrayList<>(chunk.size());
+        Set<String> names = new HashSet<>();
+        for (Entry entry : chunk) {
+            Set<ConstraintViolation<Planet>> violations = validator.validate(entry.planet);
+            if (!violations.isEmpty()) {
+                result.reject(entry.index, entry.planet, PlanetBatchError.Reason.INVALID, describe(violations));
+            } else if (!names.add(entry.planet.getName())) {
+                result.reject(entry.index, entry.planet, PlanetBatchError.Reason.CONFLICT, "Duplicated name in request");
+            } else {
+                valid.add(entry);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        Set<String> existing = new HashSet<>(planetRepository.findNamesIn(names));
+        List<Entry> pending = new ArrayList<>(valid.size());
+        for (Entry entry : valid) {
+            if (existing.contains(entry.planet.getName())) {
+                result.reject(entry.index, entry.planet, PlanetBatchError.Reason.CONFLICT, "Planet already exists");
+            } else {
+                pending.add(entry);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Planet> inserted;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, pending, pending.size(),
+                    (ps, entry) -> {
+                        ps.setString(1, entry.planet.getName());
+                        ps.setString(2, entry.planet.getClimate());
+                        ps.setString(3, entry.planet.getTerrain());
+                    }));
+            inserted = pending.stream().map(entry -> entry.planet).collect(Collectors.toList());
+        } catch (DataIntegrityViolationException ex) {
+            // someone else inserted one of the names meanwhile, or the collation folds names we saw as distinct:
+            // fall back to row by row to find out which ones
+            inserted = insertOneByOne(pending, result);
+        }
+        result.created(inserted.size());
+        if (!inserted.isEmpty()) {
+            // JDBC batches do not hand back generated keys, listeners get the rows as stored
+            Set<String> insertedNames = inserted.stream().map(Planet::getName).collect(Collectors.toSet());
+            List<Planet> stored = planetRepository.findByNameIn(insertedNames);
+            eventPublisher.publishEvent(PlanetsChangedEvent.saved(stored));
+            storedListener.accept(stored);
+        }
+    }
+
+    private List<Planet> insertOneByOne(List<Entry> entries, PlanetBatchResult result) {
+        List<Planet> inserted = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, entry.planet.getName(), entry.planet.getClimate(), entry.planet.getTerrain());
+                inserted.add(entry.planet);
+            } catch (DataIntegrityViolationException ex) {
+                result.reject(entry.index, entry.planet, PlanetBatchError.Reason.CONFLICT, "Planet already exists");
+            }
+        }
+        return inserted;
+    }
+
+    private void count(PlanetBatchResult result) {
+        createdRows.increment(result.getCreated());
+        for (PlanetBatchError error : result.getErrors()) {
+            (error.getReason() == PlanetBatchError.Reason.CONFLICT ? conflictingRows : invalidRows).increment();
+        }
+    }
+
+    private static String describe(Set<ConstraintViolation<Planet>> violations) {
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static class Entry {
+        private final int index;
+        private final Planet planet;
+
+        private Entry(int index, Planet planet) {
+            this.index = index;
+            this.planet = planet;
+        }
+    }
+}
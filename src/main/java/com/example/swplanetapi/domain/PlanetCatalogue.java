@@ -0,0 +1,406 @@
+package com.example.swplanetapi.domain;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * The planet catalogue held off heap, for deployments that serve a large catalogue read-only. With
+ * {@code planets.catalogue.enabled}, {@link PlanetService} answers lookups by id and name and filtered lists from
+ * here instead of the database, and the heap only holds the planets being returned. The planets live in a
+ * {@link PlanetCatalogueSnapshot}, built from the database before the web server starts and rebuilt every
+ * {@code planets.catalogue.refresh-interval}; a rebuild replaces the snapshot in one step, so readers see either
+ * the old catalogue or the new one.
+ * <p>
+ * Snapshots are never written to. Planets written by this instance are kept on heap, next to the snapshot, until
+ * the next rebuild picks them up, so they are read back at once like with {@link PlanetIndex}.
+ * <p>
+ * With {@code planets.catalogue.snapshot-file}, every build is saved to that file and served from a mapping of it.
+ * At startup an existing file is mapped instead of reading the database, so the catalogue, and the indexes built
+ * from it, serve reads right away; a file that fails its checksum is ignored and the database read instead. Once the
+ * application is ready, it catches up in the background: the planets written since the snapshot and the ids no
+ * longer in the database are published as {@link PlanetsChangedEvent}s, a page at a time, which bring every
+ * in-memory view up to date. This is meant for a snapshot left by the previous run, as after a rolling deploy; the
+ * planets written since are held on heap until the next rebuild.
+ */
+@Component
+public class PlanetCatalogue implements SmartLifecycle {
+
+    static final String PLANETS_GAUGE = "planets.catalogue.planets";
+    static final String BYTES_GAUGE = "planets.catalogue.bytes";
+
+    private static final Logger log = LoggerFactory.getLogger(PlanetCatalogue.class);
+    // last_modified is stamped by whichever instance or database wrote the planet, whose clock may be behind
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    private final PlanetRepository planetRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TaskScheduler taskScheduler;
+    private final boolean enabled;
+    private final Path snapshotFile;
+    // a lock rather than a monitor, so a write on a virtual thread waiting for it does not pin its carrier
+    private final Lock lock = new ReentrantLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private volatile State state;
+    // mapped from the snapshot file at startup and not caught up yet
+    private volatile PlanetCatalogueSnapshot behind;
+    // collects the writes made while a rebuild is running, which its snapshot may have missed
+    private Changes changesSinceRebuild;
+    private volatile boolean running;
+
+    public PlanetCatalogue(PlanetRepository planetRepository, EntityManager entityManager,
+                           PlatformTransactionManager transactionManager, ApplicationEventPublisher eventPublisher,
+                           TaskScheduler taskScheduler, MeterRegistry meterRegistry,
+                           @Value("${planets.catalogue.enabled:false}") boolean enabled,
+                           @Value("${planets.catalogue.snapshot-file:}") String snapshotFile) {
+        this.planetRepository = planetRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.eventPublisher = eventPublisher;
+        this.taskScheduler = taskScheduler;
+        this.enabled = enabled;
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+        if (enabled) {
+            Gauge.builder(PLANETS_GAUGE, this, catalogue -> catalogue.state == null ? 0 : catalogue.state.snapshot.size())
+                    .register(meterRegistry);
+            Gauge.builder(BYTES_GAUGE, this, catalogue -> catalogue.state == null ? 0 : catalogue.state.snapshot.byteSize())
+                    .baseUnit("bytes").register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<Planet> get(Long id) {
+        State current = currentState();
+        if (current.changes.removed.contains(id)) {
+            return Optional.empty();
+        }
+        Planet saved = current.changes.saved.get(id);
+        return saved != null ? Optional.of(saved) : current.snapshot.get(id);
+    }
+
+    /**
+     * The planet of that name, ignoring case and accents like the database's collation does.
+     */
+    public Optional<Planet> getByName(String name) {
+        State current = currentState();
+        Planet saved = current.changes.savedByName.get(PlanetNameIndex.fold(name));
+        if (saved != null && current.changes.saved.get(saved.getId()) == saved) {
+            return Optional.of(saved);
+        }
+        // a planet written since the snapshot may have been renamed or removed
+        return current.snapshot.getByName(name)
+                .filter(planet -> !current.changes.saved.containsKey(planet.getId())
+                        && !current.changes.removed.contains(planet.getId()));
+    }
+
+    /**
+     * The planets of a set of ids, in id order, such as the ones {@link PlanetIndex#find(String, String)} returns.
+     */
+    public List<Planet> list(RoaringBitmap ids) {
+        List<Planet> planets = new ArrayList<>(ids.getCardinality());
+        IntIterator iterator = ids.getIntIterator();
+        while (iterator.hasNext()) {
+            get((long) iterator.next()).ifPresent(planets::add);
+        }
+        return planets;
+    }
+
+    /**
+     * Hands every planet to the consumer, so other in-memory indexes can be built without reading the database.
+     */
+    public void forEach(Consumer<Planet> consumer) {
+        State current = currentState();
+        current.snapshot.forEach(planet -> {
+            if (!current.changes.saved.containsKey(planet.getId()) && !current.changes.removed.contains(planet.getId())) {
+                consumer.accept(planet);
+            }
+        });
+        current.changes.saved.values().forEach(consumer);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        lock.lock();
+        try {
+            if (state != null) {
+                state.changes.apply(event);
+            }
+            if (changesSinceRebuild != null) {
+                changesSinceRebuild.apply(event);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${planets.catalogue.refresh-interval:PT10M}", initialDelayString = "${planets.catalogue.refresh-interval:PT10M}")
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        rebuildLock.lock();
+        try {
+            Changes changes = new Changes();
+            setChangesSinceRebuild(changes);
+            try {
+                Instant takenAt = Instant.now();
+                PlanetCatalogueSnapshot.Builder builder = new PlanetCatalogueSnapshot.Builder();
+                // from the primary, which has every write this instance already applied
+                ReadFreshness.LATEST.run(() -> readOnlyTransaction.executeWithoutResult(status -> {
+                    long read = 0;
+                    try (Stream<Planet> planets = planetRepository.streamAll()) {
+                        Iterator<Planet> iterator = planets.iterator();
+                        while (iterator.hasNext()) {
+                            builder.add(iterator.next());
+                            if (++read % PlanetRepository.STREAM_FETCH_SIZE == 0) {
+                                entityManager.clear();
+                            }
+                        }
+                    }
+                }));
+                PlanetCatalogueSnapshot snapshot = save(builder.build(takenAt));
+                setState(new State(snapshot, changes));
+                log.info("Planet catalogue built from {} planets ({} bytes)", snapshot.size(), snapshot.byteSize());
+            } finally {
+                setChangesSinceRebuild(null);
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+        // not for the build at startup, which the indexes start from on their own
+        if (running) {
+            eventPublisher.publishEvent(new PlanetCatalogueRebuiltEvent());
+        }
+    }
+
+    /**
+     * Brings a catalogue mapped from the snapshot file up to date, in the background on the scheduler, which the
+     * context shuts down with it. Only once the application is ready, so the indexes built from the catalogue at
+     * startup are there to follow the changes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void catchUp() {
+        PlanetCatalogueSnapshot snapshot = behind;
+        if (snapshot == null) {
+            return;
+        }
+        behind = null;
+        taskScheduler.schedule(() -> {
+            try {
+                catchUp(snapshot);
+            } catch (RuntimeException ex) {
+                log.error("Could not catch up with the database, the planet catalogue is stale until the next rebuild", ex);
+            }
+        }, Instant.now());
+    }
+
+    /**
+     * Publishes the planets written since the snapshot was taken and the ids it has that the database no longer
+     * does. Both are read in id order, so finding the removed ids is a merge of two sorted sequences.
+     * <p>
+     * The planets written are read and published {@link PlanetRepository#STREAM_FETCH_SIZE} at a time, each page
+     * in a transaction of its own: the listeners only see what is published inside a transaction once it commits,
+     * and its persistence context, which holds every planet read, goes with it.
+     */
+    private void catchUp(PlanetCatalogueSnapshot snapshot) {
+        Instant since = snapshot.takenAt().minus(CLOCK_SKEW);
+        long saved = 0;
+        long afterId = 0;
+        List<Planet> page;
+        do {
+            long after = afterId;
+            page = ReadFreshness.LATEST.read(() -> readOnlyTransaction.execute(status -> planetRepository
+                    .findModifiedSinceAfter(since, after, PageRequest.of(0, PlanetRepository.STREAM_FETCH_SIZE))));
+            if (!page.isEmpty()) {
+                eventPublisher.publishEvent(PlanetsChangedEvent.savedElsewhere(page));
+                saved += page.size();
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == PlanetRepository.STREAM_FETCH_SIZE);
+        List<Long> removed = new ArrayList<>();
+        ReadFreshness.LATEST.run(() -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Long> ids = planetRepository.streamIds()) {
+                Iterator<Long> current = ids.iterator();
+                long next = Long.MIN_VALUE;
+                PrimitiveIterator.OfLong known = snapshot.ids();
+                while (known.hasNext()) {
+                    long id = known.nextLong();
+                    while (next < id) {
+                        next = current.hasNext() ? current.next() : Long.MAX_VALUE;
+                    }
+                    if (next != id) {
+                        removed.add(id);
+                    }
+                }
+            }
+        }));
+        if (!removed.isEmpty()) {
+            eventPublisher.publishEvent(PlanetsChangedEvent.removedElsewhere(removed));
+        }
+        log.info("Planet catalogue caught up with the database: {} planets written and {} removed since {}",
+                saved, removed.size(), snapshot.takenAt());
+    }
+
+    @Override
+    public void start() {
+        PlanetCatalogueSnapshot snapshot = enabled ? readSnapshotFile() : null;
+        if (snapshot == null) {
+            rebuild();
+        } else {
+            setState(new State(snapshot, new Changes()));
+            behind = snapshot;
+            log.info("Planet catalogue mapped from {}: {} planets as of {}", snapshotFile, snapshot.size(), snapshot.takenAt());
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ahead of the web server, so no request finds the catalogue missing.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Writes the snapshot to the snapshot file, if there is one, and returns its mapping, which leaves the pages
+     * to the operating system instead of holding them in direct memory. Without the file the snapshot is kept.
+     */
+    private PlanetCatalogueSnapshot save(PlanetCatalogueSnapshot snapshot) {
+        if (snapshotFile == null) {
+            return snapshot;
+        }
+        try {
+            snapshot.writeTo(snapshotFile);
+            return PlanetCatalogueSnapshot.map(snapshotFile);
+        } catch (IOException | IllegalArgumentException ex) {
+            log.warn("Could not save the planet catalogue to {}", snapshotFile, ex);
+            return snapshot;
+        }
+    }
+
+    private PlanetCatalogueSnapshot readSnapshotFile() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return null;
+        }
+        try {
+            return PlanetCatalogueSnapshot.map(snapshotFile);
+        } catch (IOException | RuntimeException ex) {
+            // whatever is wrong with the file, the database still has every planet
+            log.warn("Ignoring the planet catalogue in {}, it is rebuilt from the database", snapshotFile, ex);
+            return null;
+        }
+    }
+
+    private void setState(State state) {
+        lock.lock();
+        try {
+            this.state = state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setChangesSinceRebuild(Changes changes) {
+        lock.lock();
+        try {
+            changesSinceRebuild = changes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private State currentState() {
+        State current = state;
+        if (!running || current == null) {
+            throw new IllegalStateException("Planet catalogue is not built yet");
+        }
+        return current;
+    }
+
+    private static class State {
+        private final PlanetCatalogueSnapshot snapshot;
+        private final Changes changes;
+
+        private State(PlanetCatalogueSnapshot snapshot, Changes changes) {
+            this.snapshot = snapshot;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Planets saved or removed since a snapshot was taken, {@code savedByName} keyed by folded name. A renamed
+     * planet stays under its old name there until the next rebuild, so a lookup by name checks the entry is still
+     * the current one.
+     */
+    private static class Changes {
+        private final Map<Long, Planet> saved = new ConcurrentHashMap<>();
+        private final Map<String, Planet> savedByName = new ConcurrentHashMap<>();
+        private final Set<Long> removed = ConcurrentHashMap.newKeySet();
+
+        private void apply(PlanetsChangedEvent event) {
+            for (Planet planet : event.getSaved()) {
+                saved.put(planet.getId(), planet);
+                savedByName.put(PlanetNameIndex.fold(planet.getName()), planet);
+                removed.remove(planet.getId());
+            }
+            for (Long id : event.getRemovedIds()) {
+                Planet planet = saved.remove(id);
+                if (planet != null) {
+                    savedByName.remove(PlanetNameIndex.fold(planet.getName()), planet);
+                }
+                removed.add(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.swplanetapi.domain;
+
+/**
+ * Published after a scheduled rebuild of the {@link PlanetCatalogue} replaced its snapshot, so the indexes built
+ * from the catalogue are rebuilt from the new one instead of reading the database again.
+ */
+public class PlanetCatalogueRebuiltEvent {
+}
@@ -0,0 +1,344 @@
+package com.example.swplanetapi.domain;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * One build of the {@link PlanetCatalogue}, packed into a single buffer outside the heap. Terrains and climates
+ * are dictionary-encoded: each distinct value is stored once and records point to it by number. Records are fixed
+ * width and sorted by id, so a lookup by id is a binary search; a lookup by name goes through an open-addressing
+ * table of record numbers keyed by a hash of the {@linkplain PlanetNameIndex#fold(String) folded} name, so it
+ * ignores case and accents as the database's collation does. Planets are only materialized when read.
+ * <pre>
+ * header      magic, format version, planet count, dictionary size, the offset of each section below, a CRC32
+ *             of every other byte of the snapshot, then when the planets were read (epoch micros)
+ * dictionary  per distinct terrain or climate: offset and length of its UTF-8 bytes in the strings
+ * records     per planet, {@value #RECORD_BYTES} bytes: id, version, last modified (epoch micros), name offset
+ *             and length in the strings, terrain and climate dictionary numbers
+ * strings     UTF-8 bytes of the names and dictionary values
+ * names       hash table, a power of two of int slots holding record number + 1, 0 when empty
+ * </pre>
+ * All numbers are little-endian. The buffer is never written once built, so any number of threads can read it.
+ * The same bytes make the snapshot file: {@link #writeTo(Path)} saves them and {@link #map(Path)} reads them
+ * back by mapping the file. Mapping reads the whole file once to check it against its CRC32, so a file damaged on
+ * disk is refused rather than served.
+ */
+class PlanetCatalogueSnapshot {
+
+    static final int MAGIC = 0x544e4c50; // "PLNT"
+    static final int FORMAT_VERSION = 3;
+
+    private static final int HEADER_BYTES = 48;
+    private static final int CHECKSUM = 36;
+    private static final int TAKEN_AT = 40;
+    private static final int DICTIONARY_ENTRY_BYTES = 8;
+    private static final int RECORD_BYTES = 40;
+    private static final int ID = 0;
+    private static final int VERSION = 8;
+    private static final int LAST_MODIFIED = 16;
+    private static final int NAME_OFFSET = 24;
+    private static final int NAME_LENGTH = 28;
+    private static final int TERRAIN = 32;
+    private static final int CLIMATE = 36;
+    // version and last modified are nullable
+    private static final long NULL = Long.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int recordsOffset;
+    private final int stringsOffset;
+    private final int namesOffset;
+    private final int nameMask;
+    private final String[] dictionary;
+    private final Instant takenAt;
+
+    /**
+     * Reads a buffer laid out by {@link Builder#build(Instant)}.
+     */
+    PlanetCatalogueSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < HEADER_BYTES || this.buffer.getInt(0) != MAGIC
+                || this.buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Not a planet catalogue in format " + FORMAT_VERSION);
+        }
+        if (this.buffer.capacity() != (long) this.buffer.getInt(28) + (long) this.buffer.getInt(32) * Integer.BYTES) {
+            throw new IllegalArgumentException("Planet catalogue is truncated");
+        }
+        this.size = this.buffer.getInt(8);
+        this.dictionary = new String[this.buffer.getInt(12)];
+        int dictionaryOffset = this.buffer.getInt(16);
+        this.recordsOffset = this.buffer.getInt(20);
+        this.stringsOffset = this.buffer.getInt(24);
+        this.namesOffset = this.buffer.getInt(28);
+        this.nameMask = this.buffer.getInt(32) - 1;
+        this.takenAt = instant(this.buffer.getLong(TAKEN_AT));
+        for (int i = 0; i < dictionary.length; i++) {
+            int entry = dictionaryOffset + i * DICTIONARY_ENTRY_BYTES;
+            dictionary[i] = string(this.buffer.getInt(entry), this.buffer.getInt(entry + 4));
+        }
+    }
+
+    /**
+     * Maps a file saved by {@link #writeTo(Path)}, read-only, after checking its CRC32.
+     */
+    static PlanetCatalogueSnapshot map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            // shorter than a header is refused by the constructor
+            if (bytes.capacity() >= HEADER_BYTES && bytes.getInt(CHECKSUM) != checksum(bytes)) {
+                throw new IllegalArgumentException("Planet catalogue in " + file + " does not match its checksum");
+            }
+            return new PlanetCatalogueSnapshot(bytes);
+        }
+    }
+
+    /**
+     * Saves the snapshot to a file, replacing it in one step, so a reader finds either the old file or the whole
+     * new one. A file already mapped keeps its old contents.
+     */
+    void writeTo(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = buffer.duplicate().clear();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * When the planets were read from the database; writes after that may be missing.
+     */
+    Instant takenAt() {
+        return takenAt;
+    }
+
+    /**
+     * Hands every planet to the consumer, in id order.
+     */
+    void forEach(Consumer<Planet> consumer) {
+        for (int index = 0; index < size; index++) {
+            consumer.accept(planet(index));
+        }
+    }
+
+    /**
+     * Ids of every planet, in order, without reading the rest of the records.
+     */
+    PrimitiveIterator.OfLong ids() {
+        return IntStream.range(0, size).mapToLong(index -> buffer.getLong(record(index) + ID)).iterator();
+    }
+
+    /**
+     * Bytes taken by the whole snapshot.
+     */
+    int byteSize() {
+        return buffer.capacity();
+    }
+
+    Optional<Planet> get(long id) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleId = buffer.getLong(record(middle) + ID);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return Optional.of(planet(middle));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The planet whose name folds the same as {@code name}, the first one found if several do.
+     */
+    Optional<Planet> getByName(String name) {
+        String folded = PlanetNameIndex.fold(name);
+        for (int slot = nameHash(folded) & nameMask; ; slot = (slot + 1) & nameMask) {
+            int index = buffer.getInt(namesOffset + slot * Integer.BYTES) - 1;
+            if (index < 0) {
+                return Optional.empty();
+            }
+            int record = record(index);
+            if (PlanetNameIndex.fold(string(buffer.getInt(record + NAME_OFFSET), buffer.getInt(record + NAME_LENGTH)))
+                    .equals(folded)) {
+                return Optional.of(planet(index));
+            }
+        }
+    }
+
+    private int record(int index) {
+        return recordsOffset + index * RECORD_BYTES;
+    }
+
+    private Planet planet(int index) {
+        int record = record(index);
+        Planet planet = new Planet(buffer.getLong(record + ID),
+                string(buffer.getInt(record + NAME_OFFSET), buffer.getInt(record + NAME_LENGTH)),
+                dictionary[buffer.getInt(record + CLIMATE)], dictionary[buffer.getInt(record + TERRAIN)]);
+        long version = buffer.getLong(record + VERSION);
+        long lastModified = buffer.getLong(record + LAST_MODIFIED);
+        planet.setVersion(version == NULL ? null : version);
+        planet.setLastModified(lastModified == NULL ? null : instant(lastModified));
+        return planet;
+    }
+
+    private static Instant instant(long epochMicros) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000L), Math.floorMod(epochMicros, 1_000_000L) * 1_000L);
+    }
+
+    private static long epochMicros(Instant instant) {
+        return instant.getEpochSecond() * 1_000_000L + instant.getNano() / 1_000;
+    }
+
+    private String string(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(stringsOffset + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * CRC32 of the whole buffer but the checksum itself, which it is stored in.
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(0, CHECKSUM));
+        crc.update(buffer.slice(CHECKSUM + Integer.BYTES, buffer.capacity() - CHECKSUM - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static int nameHash(String folded) {
+        int hash = 0;
+        for (byte b : folded.getBytes(StandardCharsets.UTF_8)) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Takes planets in increasing id order and lays them out off heap. Records and strings grow in buffers of
+     * their own while planets are added, and are copied once into the final buffer by {@link #build(Instant)}.
+     */
+    static class Builder {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<int[]> dictionary = new ArrayList<>();
+        private ByteBuffer records = allocate(RECORD_BYTES * 1024);
+        private ByteBuffer strings = allocate(64 * 1024);
+        private int size;
+        private long lastId = Long.MIN_VALUE;
+
+        Builder add(Planet planet) {
+            long id = planet.getId();
+            if (size > 0 && id <= lastId) {
+                throw new IllegalArgumentException("Planets must come in increasing id order, got " + id + " after " + lastId);
+            }
+            int[] name = putString(planet.getName());
+            int terrain = code(planet.getTerrain());
+            int climate = code(planet.getClimate());
+            records = ensureRemaining(records, RECORD_BYTES);
+            Instant lastModified = planet.getLastModified();
+            records.putLong(id)
+                    .putLong(planet.getVersion() == null ? NULL : planet.getVersion())
+                    .putLong(lastModified == null ? NULL : epochMicros(lastModified))
+                    .putInt(name[0]).putInt(name[1])
+                    .putInt(terrain).putInt(climate);
+            lastId = id;
+            size++;
+            return this;
+        }
+
+        /**
+         * @param takenAt when the planets started being read
+         */
+        PlanetCatalogueSnapshot build(Instant takenAt) {
+            // at most half full, so probes stay short
+            int slots = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+            int dictionaryOffset = HEADER_BYTES;
+            int recordsOffset = dictionaryOffset + dictionary.size() * DICTIONARY_ENTRY_BYTES;
+            int stringsOffset = recordsOffset + records.position();
+            long namesOffset = (long) stringsOffset + strings.position();
+            long total = namesOffset + (long) slots * Integer.BYTES;
+            if (total > Integer.MAX_VALUE || slots <= 0) {
+                throw new IllegalStateException("Planet catalogue of " + size + " planets does not fit in one buffer");
+            }
+            ByteBuffer buffer = allocate((int) total);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(size).putInt(dictionary.size())
+                    .putInt(dictionaryOffset).putInt(recordsOffset).putInt(stringsOffset).putInt((int) namesOffset)
+                    .putInt(slots).putInt(0).putLong(epochMicros(takenAt));
+            buffer.position(dictionaryOffset);
+            dictionary.forEach(entry -> buffer.putInt(entry[0]).putInt(entry[1]));
+            buffer.put(records.flip()).put(strings.flip());
+            for (int index = 0; index < size; index++) {
+                int record = recordsOffset + index * RECORD_BYTES;
+                byte[] name = new byte[buffer.getInt(record + NAME_LENGTH)];
+                buffer.get(stringsOffset + buffer.getInt(record + NAME_OFFSET), name);
+                int slot = nameHash(PlanetNameIndex.fold(new String(name, StandardCharsets.UTF_8))) & (slots - 1);
+                while (buffer.getInt((int) namesOffset + slot * Integer.BYTES) != 0) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                buffer.putInt((int) namesOffset + slot * Integer.BYTES, index + 1);
+            }
+            buffer.putInt(CHECKSUM, checksum(buffer));
+            return new PlanetCatalogueSnapshot(buffer.clear());
+        }
+
+        private int code(String value) {
+            return codes.computeIfAbsent(value, key -> {
+                dictionary.add(putString(key));
+                return dictionary.size() - 1;
+            });
+        }
+
+        private int[] putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            strings = ensureRemaining(strings, bytes.length);
+            int offset = strings.position();
+            strings.put(bytes);
+            return new int[]{offset, bytes.length};
+        }
+
+        private static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return buffer;
+            }
+            long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + bytes);
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Planet catalogue does not fit in one buffer");
+            }
+            return allocate((int) capacity).put(buffer.flip());
+        }
+
+        private static ByteBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
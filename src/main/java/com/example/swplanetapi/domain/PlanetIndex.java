@@ -0,0 +1,354 @@
+package com.example.swplanetapi.domain;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory index of the planet catalogue. Every terrain and climate, both as a whole value and split into its
+ * comma-separated tags, maps to a compressed (Roaring) bitmap of the ids of the planets carrying it, so any
+ * combination of filters is a few bitmap ANDs and ORs. Roaring bitmaps hold ints, so this assumes ids fit in one.
+ * <p>
+ * In {@link QueryMode#MEMORY} the planets themselves are kept too and {@link #list(String, String)} answers
+ * without touching the database. In {@link QueryMode#DATABASE} the index only resolves tag queries to ids and
+ * the rows are read from the database.
+ * <p>
+ * The index is built before the web server starts, from the {@link PlanetCatalogue} when it is enabled and from
+ * the database otherwise, follows the writes of this instance through {@link PlanetsChangedEvent} and is rebuilt
+ * periodically to pick up everything else; with the catalogue, from the catalogue each time it is rebuilt. The
+ * changes made while a rebuild reads the planets are replayed onto the new build before it replaces the old one,
+ * since the rows read may predate them.
+ */
+@Component
+public class PlanetIndex implements SmartLifecycle {
+
+    public enum QueryMode {
+        DATABASE, MEMORY
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(PlanetIndex.class);
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final PlanetRepository planetRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final QueryMode queryMode;
+    private final PlanetCatalogue planetCatalogue;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock();
+    private Snapshot snapshot;
+    // collects the changes made while a rebuild is running, which its snapshot may have missed
+    private List<PlanetsChangedEvent> changesSinceRebuild;
+    private volatile boolean running;
+
+    public PlanetIndex(PlanetRepository planetRepository, EntityManager entityManager,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${planets.query.mode:database}") QueryMode queryMode, PlanetCatalogue planetCatalogue) {
+        this.planetRepository = planetRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.queryMode = queryMode;
+        this.planetCatalogue = planetCatalogue;
+        this.snapshot = new Snapshot(queryMode);
+    }
+
+    public boolean isMemoryResident() {
+        return queryMode == QueryMode.MEMORY;
+    }
+
+    /**
+     * Ids of the planets matching both filters. A plain value matches the whole attribute ignoring case, an
+     * {@code any:} or {@code all:} value matches its tags (see {@link TagFilter}) and {@code null} matches
+     * everything. The returned bitmap is a copy owned by the caller.
+     */
+    public RoaringBitmap find(String terrain, String climate) {
+        checkRunning();
+        lock.readLock().lock();
+        try {
+            return snapshot.find(terrain, climate);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Planets matching both filters, as {@link #find(String, String)}, in id order. Memory-resident mode only.
+     */
+    public List<Planet> list(String terrain, String climate) {
+        if (!isMemoryResident()) {
+            throw new IllegalStateException("Planet index is not memory-resident");
+        }
+        checkRunning();
+        lock.readLock().lock();
+        try {
+            RoaringBitmap ids = snapshot.find(terrain, climate);
+            List<Planet> planets = new ArrayList<>(ids.getCardinality());
+            IntIterator iterator = ids.getIntIterator();
+            while (iterator.hasNext()) {
+                planets.add(snapshot.planets.get(iterator.next()));
+            }
+            return planets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            snapshot.apply(event);
+            if (changesSinceRebuild != null) {
+                changesSinceRebuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${planets.index.refresh-interval:PT10M}", initialDelayString = "${planets.index.refresh-interval:PT10M}")
+    public void rebuild() {
+        if (planetCatalogue.isEnabled()) {
+            // rebuilt from the catalogue whenever it is, see onCatalogueRebuilt
+            return;
+        }
+        // from the primary, which has every write this instance already applied
+        build("database", rebuilt -> ReadFreshness.LATEST.run(() -> readOnlyTransaction.executeWithoutResult(status -> {
+            long read = 0;
+            try (Stream<Planet> planets = planetRepository.streamAll()) {
+                Iterator<Planet> iterator = planets.iterator();
+                while (iterator.hasNext()) {
+                    rebuilt.add(iterator.next());
+                    if (++read % PlanetRepository.STREAM_FETCH_SIZE == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+        })));
+    }
+
+    /**
+     * Rebuilds from the catalogue right after it was rebuilt, rather than reading the table a second time.
+     */
+    @EventListener(PlanetCatalogueRebuiltEvent.class)
+    public void onCatalogueRebuilt() {
+        buildFromCatalogue();
+    }
+
+    @Override
+    public void start() {
+        if (planetCatalogue.isEnabled()) {
+            buildFromCatalogue();
+        } else {
+            rebuild();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ahead of the web server, so no request sees an empty index.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void buildFromCatalogue() {
+        build("catalogue", built -> planetCatalogue.forEach(built::add));
+    }
+
+    private void build(String source, Consumer<Snapshot> reader) {
+        rebuildLock.lock();
+        try {
+            List<PlanetsChangedEvent> changes = new ArrayList<>();
+            setChangesSinceRebuild(changes);
+            Snapshot built = new Snapshot(queryMode);
+            try {
+                reader.accept(built);
+                built.compact();
+                lock.writeLock().lock();
+                try {
+                    changes.forEach(built::apply);
+                    snapshot = built;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } finally {
+                setChangesSinceRebuild(null);
+            }
+            log.info("Planet index built from {} planets in the {} ({} terrains, {} climates, {} mode)",
+                    built.all.getCardinality(), source, built.terrainValues.size(), built.climateValues.size(), queryMode);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void setChangesSinceRebuild(List<PlanetsChangedEvent> changes) {
+        lock.writeLock().lock();
+        try {
+            changesSinceRebuild = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("Planet index is not built yet");
+        }
+    }
+
+    /**
+     * Bitmaps of one build of the index. Each planet's terrain and climate are remembered as indexed, by the
+     * planets kept in {@link QueryMode#MEMORY} and on their own otherwise, so saving a planet again or removing it
+     * clears its id from just those values and tags, as its terrain or climate may have changed. Values and tags
+     * left without planets are dropped.
+     */
+    private static class Snapshot {
+        private final RoaringBitmap all = new RoaringBitmap();
+        private final Map<String, RoaringBitmap> terrainValues = new HashMap<>();
+        private final Map<String, RoaringBitmap> terrainTags = new HashMap<>();
+        private final Map<String, RoaringBitmap> climateValues = new HashMap<>();
+        private final Map<String, RoaringBitmap> climateTags = new HashMap<>();
+        private final Map<Integer, Planet> planets;
+        private final Map<Integer, Indexed> indexed;
+
+        private Snapshot(QueryMode queryMode) {
+            this.planets = queryMode == QueryMode.MEMORY ? new HashMap<>() : null;
+            this.indexed = queryMode == QueryMode.MEMORY ? null : new HashMap<>();
+        }
+
+        private void add(Planet planet) {
+            int id = Math.toIntExact(planet.getId());
+            unindex(id);
+            all.add(id);
+            index(terrainValues, terrainTags, planet.getTerrain(), id);
+            index(climateValues, climateTags, planet.getClimate(), id);
+            if (planets != null) {
+                planets.put(id, planet);
+            } else {
+                indexed.put(id, new Indexed(planet.getTerrain(), planet.getClimate()));
+            }
+        }
+
+        private void apply(PlanetsChangedEvent event) {
+            event.getSaved().forEach(this::add);
+            event.getRemovedIds().forEach(this::remove);
+        }
+
+        private void remove(Long planetId) {
+            int id = Math.toIntExact(planetId);
+            unindex(id);
+            all.remove(id);
+        }
+
+        private void unindex(int id) {
+            if (planets != null) {
+                Planet previous = planets.remove(id);
+                if (previous != null) {
+                    unindex(id, previous.getTerrain(), previous.getClimate());
+                }
+            } else {
+                Indexed previous = indexed.remove(id);
+                if (previous != null) {
+                    unindex(id, previous.terrain, previous.climate);
+                }
+            }
+        }
+
+        private void unindex(int id, String terrain, String climate) {
+            unindex(terrainValues, terrainTags, terrain, id);
+            unindex(climateValues, climateTags, climate, id);
+        }
+
+        private RoaringBitmap find(String terrain, String climate) {
+            RoaringBitmap result = all.clone();
+            if (terrain != null) {
+                result.and(match(terrainValues, terrainTags, terrain));
+            }
+            if (climate != null) {
+                result.and(match(climateValues, climateTags, climate));
+            }
+            return result;
+        }
+
+        private void compact() {
+            all.runOptimize();
+            Stream.of(terrainValues, terrainTags, climateValues, climateTags)
+                    .flatMap(index -> index.values().stream())
+                    .forEach(RoaringBitmap::runOptimize);
+        }
+
+        private static void index(Map<String, RoaringBitmap> values, Map<String, RoaringBitmap> tags, String value, int id) {
+            values.computeIfAbsent(QueryBuilder.normalize(value), key -> new RoaringBitmap()).add(id);
+            TagFilter.split(value).forEach(tag -> tags.computeIfAbsent(tag, key -> new RoaringBitmap()).add(id));
+        }
+
+        private static void unindex(Map<String, RoaringBitmap> values, Map<String, RoaringBitmap> tags, String value, int id) {
+            forget(values, QueryBuilder.normalize(value), id);
+            TagFilter.split(value).forEach(tag -> forget(tags, tag, id));
+        }
+
+        private static void forget(Map<String, RoaringBitmap> index, String key, int id) {
+            index.computeIfPresent(key, (k, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+
+        private static RoaringBitmap match(Map<String, RoaringBitmap> values, Map<String, RoaringBitmap> tags, String filter) {
+            TagFilter tagFilter = TagFilter.parse(filter);
+            if (tagFilter == null) {
+                return values.getOrDefault(QueryBuilder.normalize(filter), EMPTY);
+            }
+            RoaringBitmap[] bitmaps = tagFilter.getTags().stream()
+                    .map(tag -> tags.getOrDefault(tag, EMPTY))
+                    .toArray(RoaringBitmap[]::new);
+            return tagFilter.getMode() == TagFilter.Mode.ANY ? FastAggregation.or(bitmaps) : FastAggregation.and(bitmaps);
+        }
+    }
+
+    private static class Indexed {
+        private final String terrain;
+        private final String climate;
+
+        private Indexed(String terrain, String climate) {
+            this.terrain = terrain;
+            this.climate = climate;
+        }
+    }
+}
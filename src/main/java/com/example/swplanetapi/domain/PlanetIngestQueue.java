@@ -0,0 +1,179 @@
+package com.example.swplanetapi.domain;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind creation of planets. {@link #submit(Planet)} only queues the planet and hands back a ticket; a
+ * single writer thread takes whatever has queued up, up to {@code planets.ingest.batch-size} planets, and stores
+ * it through {@link PlanetBatchService}, i.e. as JDBC batches with one commit per chunk instead of one per planet.
+ * The busier the queue, the bigger the batches.
+ * <p>
+ * The queue holds at most {@code planets.ingest.queue-capacity} planets and refuses more rather than buffering
+ * without bound. Tickets can be looked up for {@code planets.ingest.status-ttl} after they were queued. Queued
+ * planets live in memory only: those still waiting when the application stops are written before it does, for
+ * up to {@code spring.lifecycle.timeout-per-shutdown-phase}, after which the rest fail. They are lost if the
+ * process dies.
+ */
+@Service
+@Profile("!reactive")
+public class PlanetIngestQueue implements SmartLifecycle {
+
+    static final String QUEUE_GAUGE = "planets.ingest.queue";
+
+    private static final Logger log = LoggerFactory.getLogger(PlanetIngestQueue.class);
+    private static final long POLL_MILLIS = 200;
+
+    private final PlanetBatchService planetBatchService;
+    private final BlockingQueue<Queued> queue;
+    private final int batchSize;
+    private final Cache<String, PlanetIngestTicket> tickets;
+    private final Duration shutdownTimeout;
+    private volatile boolean running;
+    private Thread writer;
+
+    public PlanetIngestQueue(PlanetBatchService planetBatchService, MeterRegistry meterRegistry,
+                             @Value("${planets.ingest.queue-capacity:10000}") int capacity,
+                             @Value("${planets.ingest.batch-size:${planets.batch.chunk-size:500}}") int batchSize,
+                             @Value("${planets.ingest.status-ttl:10m}") Duration statusTtl,
+                             @Value("${spring.lifecycle.timeout-per-shutdown-phase:30s}") Duration shutdownTimeout) {
+        this.planetBatchService = planetBatchService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.tickets = Caffeine.newBuilder().expireAfterWrite(statusTtl).build();
+        this.shutdownTimeout = shutdownTimeout;
+        meterRegistry.gaugeCollectionSize(QUEUE_GAUGE, Tags.empty(), queue);
+    }
+
+    /**
+     * Queues a planet for creation, or returns empty when the queue is full or not running.
+     */
+    public Optional<PlanetIngestTicket> submit(Planet planet) {
+        PlanetIngestTicket ticket = new PlanetIngestTicket(UUID.randomUUID().toString(), planet.getName());
+        if (!running || !queue.offer(new Queued(planet, ticket))) {
+            return Optional.empty();
+        }
+        tickets.put(ticket.getId(), ticket);
+        return Optional.of(ticket);
+    }
+
+    public Optional<PlanetIngestTicket> status(String ticketId) {
+        return Optional.ofNullable(tickets.getIfPresent(ticketId));
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "planet-ingest");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Refuses new planets, then waits for the writer to store those already queued, but no longer than the
+     * shutdown timeout, so a slow database cannot hold the application up. The planets still queued then fail.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<Queued> unwritten = new ArrayList<>();
+        queue.drainTo(unwritten);
+        if (!unwritten.isEmpty()) {
+            log.warn("Stopped before storing {} queued planets", unwritten.size());
+            unwritten.forEach(queued -> queued.ticket.failed("The planet was not stored before shutdown, try again"));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drain() {
+        List<Queued> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Queued first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Stores a batch and resolves its tickets. When a chunk fails, those before it are committed already: their
+     * planets were handed over as stored and are created, only the others fail.
+     */
+    private void write(List<Queued> batch) {
+        Map<String, Long> ids = new HashMap<>();
+        RuntimeException failure = null;
+        try {
+            PlanetBatchResult result = planetBatchService.createAll(batch.stream().map(queued -> queued.planet).iterator(),
+                    stored -> stored.forEach(planet -> ids.put(planet.getName(), planet.getId())));
+            for (PlanetBatchError error : result.getErrors()) {
+                batch.get(error.getIndex()).ticket.rejected(error.getMessage());
+            }
+        } catch (RuntimeException ex) {
+            failure = ex;
+            log.error("Could not store {} of {} queued planets", batch.size() - ids.size(), batch.size(), ex);
+        }
+        for (Queued queued : batch) {
+            if (queued.ticket.getStatus() != PlanetIngestTicket.Status.PENDING) {
+                continue;
+            }
+            // a repeated name is rejected, but the name of the one kept was handed over as stored
+            Long id = ids.remove(queued.planet.getName());
+            if (id != null) {
+                queued.ticket.created(id);
+            } else if (failure != null) {
+                queued.ticket.failed("Could not store the planet, try again");
+            }
+        }
+    }
+
+    private static class Queued {
+        private final Planet planet;
+        private final PlanetIngestTicket ticket;
+
+        private Queued(Planet planet, PlanetIngestTicket ticket) {
+            this.planet = planet;
+            this.ticket = ticket;
+        }
+    }
+}
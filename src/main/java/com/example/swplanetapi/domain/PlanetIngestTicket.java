@@ -0,0 +1,64 @@
+package com.example.swplanetapi.domain;
+
+/**
+ * Progress of a planet queued with {@link PlanetIngestQueue#submit(Planet)}. Written by the queue's writer
+ * thread and read by whoever polls for it.
+ */
+public class PlanetIngestTicket {
+
+    public enum Status {
+        PENDING, CREATED, REJECTED, FAILED
+    }
+
+    private final String id;
+    private final String name;
+    private volatile Status status = Status.PENDING;
+    private volatile Long planetId;
+    private volatile String message;
+
+    public PlanetIngestTicket(String id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Id of the created planet, once {@link Status#CREATED}.
+     */
+    public Long getPlanetId() {
+        return planetId;
+    }
+
+    /**
+     * Why the planet was not created, once {@link Status#REJECTED} or {@link Status#FAILED}.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    void created(Long planetId) {
+        this.planetId = planetId;
+        this.status = Status.CREATED;
+    }
+
+    void rejected(String message) {
+        this.message = message;
+        this.status = Status.REJECTED;
+    }
+
+    void failed(String message) {
+        this.message = message;
+        this.status = Status.FAILED;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.swplanetapi.domain;
+
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keys cached planet lists on the normalized filters plus a catalogue version that every write bumps.
+ * Nothing has to be evicted: after a write the old entries are simply never asked for again and age out,
+ * and a list read before the write but cached after it lands under the old version, where nobody sees it.
+ */
+@Component(PlanetListKeyGenerator.NAME)
+public class PlanetListKeyGenerator implements KeyGenerator {
+
+    public static final String NAME = "planetListKeyGenerator";
+
+    private final AtomicLong version = new AtomicLong();
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        return new SimpleKey(version.get(), QueryBuilder.normalize((String) params[0]), QueryBuilder.normalize((String) params[1]));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.swplanetapi.domain;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Planet names in memory, sorted by their folded form (lower case, accents stripped, see {@link #fold(String)}),
+ * for autocomplete. A prefix search is a walk from the prefix in the sorted map, so its cost depends on the
+ * matches returned, not on the size of the catalogue. A fuzzy search also accepts names that start within a few
+ * edits of the prefix; it walks the names as a trie would, skipping whole runs of names whose start is out of
+ * reach, so its cost depends on how many starts are within reach of the prefix rather than on how many names
+ * there are.
+ * <p>
+ * Like {@link PlanetIndex}, this is built before the web server starts, from the {@link PlanetCatalogue} when it
+ * is enabled, follows the writes of this instance through {@link PlanetsChangedEvent} and is rebuilt the same way.
+ * With the catalogue, only the names and ids are held here and the planets found are
+ * read from the catalogue, so they stay off heap.
+ */
+@Component
+public class PlanetNameIndex implements SmartLifecycle {
+
+    public static final int MAX_EDITS = 2;
+
+    private static final Logger log = LoggerFactory.getLogger(PlanetNameIndex.class);
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    // sorts below every character a folded name can contain, so each name's keys come before any longer name's
+    private static final char ID_SEPARATOR = '\u0000';
+
+    private final PlanetRepository planetRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate readOnlyTransaction;
+    private final PlanetCatalogue planetCatalogue;
+    private final Lock rebuildLock = new ReentrantLock();
+    // guards applying changes to the snapshot against swapping it
+    private final Lock changesLock = new ReentrantLock();
+    private volatile Snapshot snapshot;
+    // the changes made while a rebuild reads, replayed onto what it read
+    private List<PlanetsChangedEvent> changesSinceRebuild;
+    private volatile boolean running;
+
+    public PlanetNameIndex(PlanetRepository planetRepository, EntityManager entityManager,
+                           PlatformTransactionManager transactionManager, PlanetCatalogue planetCatalogue) {
+        this.planetRepository = planetRepository;
+        this.entityManager = entityManager;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.planetCatalogue = planetCatalogue;
+        this.snapshot = new Snapshot(!planetCatalogue.isEnabled());
+    }
+
+    /**
+     * Up to {@code limit} planets whose folded name starts with the folded {@code prefix}, in name order.
+     */
+    public List<Planet> search(String prefix, int limit) {
+        checkRunning();
+        String folded = fold(prefix);
+        Snapshot current = snapshot;
+        List<Planet> planets = new ArrayList<>(Math.min(limit, 16));
+        for (String key : current.byName.tailSet(folded)) {
+            if (planets.size() == limit || !key.startsWith(folded)) {
+                break;
+            }
+            Planet planet = planet(current, key);
+            if (planet != null) {
+                planets.add(planet);
+            }
+        }
+        return planets;
+    }
+
+    /**
+     * Up to {@code limit} planets whose folded name starts within {@code maxEdits} insertions, deletions or
+     * substitutions of the folded {@code prefix}, closest first and then in name order.
+     */
+    public List<Planet> search(String prefix, int maxEdits, int limit) {
+        if (maxEdits <= 0) {
+            return search(prefix, limit);
+        }
+        checkRunning();
+        Snapshot current = snapshot;
+        List<Planet> planets = new ArrayList<>(limit);
+        for (String key : closestKeys(current.byName, fold(prefix), Math.min(maxEdits, MAX_EDITS), limit)) {
+            if (planets.size() == limit) {
+                break;
+            }
+            Planet planet = planet(current, key);
+            if (planet != null) {
+                planets.add(planet);
+            }
+        }
+        return planets;
+    }
+
+    /**
+     * The keys whose name starts within {@code edits} of {@code query}, closest first and then in key order, at
+     * most {@code limit} at each distance.
+     * <p>
+     * This is the edit distance between the query and the closest start of each name, one column per name
+     * character. Keys come in sorted order, so the columns of the characters a key shares with the one before are
+     * kept, as a walk down a trie would. Once a start is settled, because every column after it would be out of
+     * reach or it is as long as a match can be, every key under it is as close: they are skipped in one step when
+     * that is too far or that distance has {@code limit} keys already. The walk stops at {@code limit} exact
+     * matches, nothing can be closer.
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> closestKeys(NavigableSet<String> byName, String query, int edits, int limit) {
+        // a start longer than the query by more than the edits allowed cannot be closer than a shorter one
+        int maxDepth = query.length() + edits;
+        int[][] columns = new int[maxDepth + 1][query.length() + 1];
+        int[] closest = new int[maxDepth + 1];
+        int[] columnMin = new int[maxDepth + 1];
+        for (int i = 0; i <= query.length(); i++) {
+            columns[0][i] = i;
+        }
+        closest[0] = query.length();
+        List<String>[] byDistance = new List[edits + 1];
+        for (int d = 0; d <= edits; d++) {
+            byDistance[d] = new ArrayList<>();
+        }
+        String previousKey = "";
+        int computed = 0;
+        String key = byName.ceiling("");
+        while (key != null) {
+            int depth = Math.min(key.indexOf(ID_SEPARATOR), maxDepth);
+            int j = 0;
+            int shared = Math.min(computed, depth);
+            while (j < shared && key.charAt(j) == previousKey.charAt(j)) {
+                j++;
+            }
+            while (j < depth && columnMin[j] <= edits) {
+                j++;
+                char c = key.charAt(j - 1);
+                int[] left = columns[j - 1];
+                int[] column = columns[j];
+                column[0] = j;
+                int min = j;
+                for (int i = 1; i <= query.length(); i++) {
+                    int substitution = left[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+                    column[i] = Math.min(substitution, Math.min(left[i], column[i - 1]) + 1);
+                    min = Math.min(min, column[i]);
+                }
+                columnMin[j] = min;
+                closest[j] = Math.min(closest[j - 1], column[query.length()]);
+            }
+            previousKey = key;
+            computed = j;
+            int distance = closest[j];
+            boolean wanted = distance <= edits && byDistance[distance].size() < limit;
+            if (wanted) {
+                byDistance[distance].add(key);
+                if (distance == 0 && byDistance[0].size() == limit) {
+                    break;
+                }
+            }
+            boolean settled = j == maxDepth || columnMin[j] > edits;
+            key = settled && !wanted ? byName.higher(key.substring(0, j) + Character.MAX_VALUE) : byName.higher(key);
+        }
+        List<String> keys = new ArrayList<>();
+        for (List<String> atDistance : byDistance) {
+            keys.addAll(atDistance);
+        }
+        return keys;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPlanetsChanged(PlanetsChangedEvent event) {
+        changesLock.lock();
+        try {
+            snapshot.apply(event);
+            if (changesSinceRebuild != null) {
+                changesSinceRebuild.add(event);
+            }
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${planets.index.refresh-interval:PT10M}", initialDelayString = "${planets.index.refresh-interval:PT10M}")
+    public void rebuild() {
+        if (planetCatalogue.isEnabled()) {
+            // rebuilt from the catalogue whenever it is, see onCatalogueRebuilt
+            return;
+        }
+        // from the primary, which has every write this instance already applied
+        build("database", rebuilt -> ReadFreshness.LATEST.run(() -> readOnlyTransaction.executeWithoutResult(status -> {
+            long read = 0;
+            try (Stream<Planet> planets = planetRepository.streamAll()) {
+                Iterator<Planet> iterator = planets.iterator();
+                while (iterator.hasNext()) {
+                    rebuilt.add(iterator.next());
+                    if (++read % PlanetRepository.STREAM_FETCH_SIZE == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+        })));
+    }
+
+    /**
+     * Rebuilds from the catalogue right after it was rebuilt, rather than reading the table a second time.
+     */
+    @EventListener(PlanetCatalogueRebuiltEvent.class)
+    public void onCatalogueRebuilt() {
+        buildFromCatalogue();
+    }
+
+    @Override
+    public void start() {
+        if (planetCatalogue.isEnabled()) {
+            buildFromCatalogue();
+        } else {
+            rebuild();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ahead of the web server, so no request sees an empty index.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    /**
+     * Lower case, without accents or other combining marks: "Endór" and "endor" fold the same.
+     */
+    static String fold(String name) {
+        String decomposed = Normalizer.normalize(name.trim(), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    private void buildFromCatalogue() {
+        build("catalogue", built -> planetCatalogue.forEach(built::add));
+    }
+
+    private void build(String source, Consumer<Snapshot> reader) {
+        rebuildLock.lock();
+        try {
+            List<PlanetsChangedEvent> changes = new ArrayList<>();
+            setChangesSinceRebuild(changes);
+            Snapshot built = new Snapshot(!planetCatalogue.isEnabled());
+            try {
+                reader.accept(built);
+                changesLock.lock();
+                try {
+                    changes.forEach(built::apply);
+                    snapshot = built;
+                } finally {
+                    changesLock.unlock();
+                }
+            } finally {
+                setChangesSinceRebuild(null);
+            }
+            log.info("Planet name index built from {} planets in the {}", built.keys.size(), source);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void setChangesSinceRebuild(List<PlanetsChangedEvent> changes) {
+        changesLock.lock();
+        try {
+            changesSinceRebuild = changes;
+        } finally {
+            changesLock.unlock();
+        }
+    }
+
+    /**
+     * The planet of a key, {@code null} if it was removed from the catalogue since the key was read.
+     */
+    private Planet planet(Snapshot current, String key) {
+        long id = Long.parseLong(key.substring(key.indexOf(ID_SEPARATOR) + 1));
+        return current.planets != null ? current.planets.get(id) : planetCatalogue.get(id).orElse(null);
+    }
+
+    private void checkRunning() {
+        if (!running) {
+            throw new IllegalStateException("Planet name index is not built yet");
+        }
+    }
+
+    /**
+     * Folded names, keyed by name and id since two names may fold the same; the ids map to their keys, so a
+     * removal or rename finds the old entry. The planets are kept by id unless the catalogue holds them.
+     */
+    private static class Snapshot {
+        private final NavigableSet<String> byName = new ConcurrentSkipListSet<>();
+        private final Map<Long, String> keys = new ConcurrentHashMap<>();
+        // null with the catalogue
+        private final Map<Long, Planet> planets;
+
+        private Snapshot(boolean keepPlanets) {
+            this.planets = keepPlanets ? new ConcurrentHashMap<>() : null;
+        }
+
+        private void apply(PlanetsChangedEvent event) {
+            event.getSaved().forEach(this::add);
+            event.getRemovedIds().forEach(this::remove);
+        }
+
+        private void add(Planet planet) {
+            String key = fold(planet.getName()) + ID_SEPARATOR + planet.getId();
+            String previous = keys.put(planet.getId(), key);
+            // the planet before its key, so a search never finds a key without it
+            if (planets != null) {
+                planets.put(planet.getId(), planet);
+            }
+            byName.add(key);
+            if (previous != null && !previous.equals(key)) {
+                byName.remove(previous);
+            }
+        }
+
+        private void remove(Long id) {
+            String key = keys.remove(id);
+            if (key != null) {
+                byName.remove(key);
+            }
+            if (planets != null) {
+                planets.remove(id);
+            }
+        }
+    }
+}
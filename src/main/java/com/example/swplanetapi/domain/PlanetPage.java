@@ -0,0 +1,25 @@
+package com.example.swplanetapi.domain;
+
+import java.util.List;
+
+public class PlanetPage {
+
+    private final List<Planet> content;
+    private final String next;
+
+    public PlanetPage(List<Planet> content, String next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<Planet> getContent() {
+        return content;
+    }
+
+    /**
+     * Cursor of the following page, or {@code null} when this is the last one.
+     */
+    public String getNext() {
+        return next;
+    }
+}
@@ -1,16 +1,103 @@
 package com.example.swplanetapi.domain;
 
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.query.QueryByExampleExecutor;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface PlanetRepository extends CrudRepository<Planet, Long>, QueryByExampleExecutor<Planet> {
+
+    int STREAM_FETCH_SIZE = 1000;
+
+    // both results go to the query cache when the second-level cache is enabled, and are ignored otherwise.
+    // Read-only like findById, which it stands beside in PlanetService, so it can go to a replica
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     Optional<Planet> findByName(String name);
 
     @Override
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     <S extends Planet> List<S> findAll(Example<S> example);
 
+    List<Planet> findByNameIn(Collection<String> names);
+
+    @Query("select p.name from Planet p where p.name in :names")
+    List<String> findNamesIn(@Param("names") Collection<String> names);
+
+    /**
+     * Keyset page of planets after {@code afterId}. Filters are matched against the lowercase columns, so
+     * they must already be {@linkplain QueryBuilder#normalize(String) normalized}.
+     */
+    @Query("select p from Planet p where p.id > :afterId"
+            + " and (:terrain is null or p.terrainLower = :terrain)"
+            + " and (:climate is null or p.climateLower = :climate)"
+            + " order by p.id")
+    List<Planet> findPageAfter(@Param("afterId") long afterId, @Param("terrain") String terrain,
+                               @Param("climate") String climate, Pageable pageable);
+
+    /**
+     * Deletes a planet with a single statement, where {@code deleteById} loads it first and throws when it is
+     * missing. Returns the number of rows deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Planet p where p.id = :id")
+    int deleteRowById(@Param("id") Long id);
+
+    /**
+     * Ids of the planets matching both filters, which must already be
+     * {@linkplain QueryBuilder#normalize(String) normalized}; {@code null} matches everything.
+     */
+    @Query("select p.id from Planet p where (:terrain is null or p.terrainLower = :terrain)"
+            + " and (:climate is null or p.climateLower = :climate)")
+    List<Long> findIdsByFilter(@Param("terrain") String terrain, @Param("climate") String climate);
+
+    /**
+     * Deletes the planets of these ids in one statement, however their rows changed since the ids were read.
+     * Returns the number of rows deleted.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Planet p where p.id in :ids")
+    int deleteRowsByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Cursor over the whole table, fetched {@value #STREAM_FETCH_SIZE} rows at a time. Must be consumed
+     * inside a transaction and closed afterwards.
+     */
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query("select p from Planet p order by p.id")
+    Stream<Planet> streamAll();
+
+    /**
+     * Keyset page of the planets written at or after {@code since}, after {@code afterId} in id order.
+     */
+    @QueryHints(@QueryHint(name = HINT_READONLY, value = "true"))
+    @Query("select p from Planet p where p.lastModified >= :since and p.id > :afterId order by p.id")
+    List<Planet> findModifiedSinceAfter(@Param("since") Instant since, @Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * Cursor over the ids of every planet, in order, under the same terms as {@link #streamAll()}.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    @Query("select p.id from Planet p order by p.id")
+    Stream<Long> streamIds();
+
 }
@@ -1,32 +1,268 @@
 package com.example.swplanetapi.domain;
 
+import io.micrometer.core.annotation.Timed;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Timed(PlanetService.TIMER_NAME)
 public class PlanetService {
 
+    public static final String PLANETS_BY_ID = "planetsById";
+    public static final String PLANETS_BY_NAME = "planetsByName";
+    public static final String PLANET_LISTS = "planetLists";
+    public static final String TIMER_NAME = "planets.service";
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+    public static final int MAX_PAGE_SIZE = 1000;
+    public static final int DEFAULT_SEARCH_LIMIT = 10;
+    public static final int MAX_SEARCH_LIMIT = 100;
+    // the fuzzy search takes memory in the square of the prefix length; no planet name comes close to this
+    public static final int MAX_SEARCH_PREFIX = 64;
+
     private PlanetRepository planetRepository;
-    public PlanetService (PlanetRepository planetRepository) {
+    private EntityManager entityManager;
+    private ApplicationEventPublisher eventPublisher;
+    private PlanetIndex planetIndex;
+    private PlanetNameIndex planetNameIndex;
+    private PlanetCatalogue planetCatalogue;
+    public PlanetService (PlanetRepository planetRepository, EntityManager entityManager,
+                          ApplicationEventPublisher eventPublisher, PlanetIndex planetIndex,
+                          PlanetNameIndex planetNameIndex, PlanetCatalogue planetCatalogue) {
         this.planetRepository = planetRepository;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.planetIndex = planetIndex;
+        this.planetNameIndex = planetNameIndex;
+        this.planetCatalogue = planetCatalogue;
     }
+    // the database may match names ignoring case or accents, so a miss cached under any spelling of the new name
+    // would hide it: the whole name cache goes, like on removals
+    @Caching(put = @CachePut(cacheNames = PLANETS_BY_ID, key = "#result.id"),
+            evict = @CacheEvict(cacheNames = PLANETS_BY_NAME, allEntries = true))
     public Planet create (Planet planet) {
-        return planetRepository.save(planet);
+        Planet planetCreated = planetRepository.save(planet);
+        eventPublisher.publishEvent(PlanetsChangedEvent.saved(List.of(planetCreated)));
+        return planetCreated;
     }
+    // misses are cached too (as empty), so polling an unknown id or name does not reach the database either.
+    // One query runs in the repository's own read-only transaction, and the catalogue needs none at all. What is
+    // read here is cached for every client, hence ReadFreshness.SHARED
+    @Cacheable(PLANETS_BY_ID)
     public Optional<Planet> get(Long id) {
-        return planetRepository.findById(id);
+        if (planetCatalogue.isEnabled()) {
+            return planetCatalogue.get(id);
+        }
+        return ReadFreshness.SHARED.read(() -> planetRepository.findById(id));
     }
+    @Cacheable(PLANETS_BY_NAME)
     public Optional<Planet> getByName(String name) {
-        return planetRepository.findByName(name);
+        if (planetCatalogue.isEnabled()) {
+            return planetCatalogue.getByName(name);
+        }
+        return ReadFreshness.SHARED.read(() -> planetRepository.findByName(name));
     }
+    // unfiltered lists are the whole table, far too big to keep around
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = PLANET_LISTS, keyGenerator = PlanetListKeyGenerator.NAME, condition = "#terrain != null || #climate != null")
     public List<Planet> list(String terrain, String climate) {
+        if (planetIndex.isMemoryResident()) {
+            return planetIndex.list(terrain, climate);
+        }
+        if (planetCatalogue.isEnabled()) {
+            return planetCatalogue.list(planetIndex.find(terrain, climate));
+        }
+        if (TagFilter.isTagQuery(terrain) || TagFilter.isTagQuery(climate)) {
+            return ReadFreshness.SHARED.read(() -> findAllById(planetIndex.find(terrain, climate)));
+        }
         Example<Planet> query = QueryBuilder.makeQuery(new Planet(climate, terrain));
-        return planetRepository.findAll(query);
+        return ReadFreshness.SHARED.read(() -> planetRepository.findAll(query));
+    }
+    // tag queries are answered by the index in every mode: its ids are sorted, so a page is a run of them
+    @Transactional(readOnly = true)
+    public Page<Planet> list(String terrain, String climate, Integer page, Integer size) {
+        int pageNumber = page == null ? 0 : Math.max(page, 0);
+        PageRequest pageRequest = PageRequest.of(pageNumber, pageSize(size), Sort.by("id"));
+        if (TagFilter.isTagQuery(terrain) || TagFilter.isTagQuery(climate)) {
+            RoaringBitmap ids = planetIndex.find(terrain, climate);
+            if (pageRequest.getOffset() >= ids.getCardinality()) {
+                return new PageImpl<>(List.of(), pageRequest, ids.getLongCardinality());
+            }
+            RoaringBitmap pageIds = idsFrom(ids, ids.select((int) pageRequest.getOffset()), pageRequest.getPageSize());
+            return new PageImpl<>(load(pageIds), pageRequest, ids.getLongCardinality());
+        }
+        Example<Planet> query = QueryBuilder.makeQuery(new Planet(climate, terrain));
+        return planetRepository.findAll(query, pageRequest);
+    }
+    @Transactional(readOnly = true)
+    public PlanetPage listPage(String terrain, String climate, String cursor, Integer limit) {
+        int pageSize = pageSize(limit);
+        long afterId = PageCursor.decode(cursor);
+        // one extra row tells us whether there is a next page without a count query
+        List<Planet> planets;
+        if (TagFilter.isTagQuery(terrain) || TagFilter.isTagQuery(climate)) {
+            int from = (int) Math.min(afterId + 1, Integer.MAX_VALUE);
+            planets = load(idsFrom(planetIndex.find(terrain, climate), from, pageSize + 1));
+        } else {
+            planets = planetRepository.findPageAfter(afterId, QueryBuilder.normalize(terrain),
+                    QueryBuilder.normalize(climate), PageRequest.of(0, pageSize + 1));
+        }
+        if (planets.size() <= pageSize) {
+            return new PlanetPage(planets, null);
+        }
+        List<Planet> content = new ArrayList<>(planets.subList(0, pageSize));
+        return new PlanetPage(content, PageCursor.encode(content.get(pageSize - 1).getId()));
+    }
+    /**
+     * Planets whose name starts with the prefix, ignoring case and accents, for autocomplete. With
+     * {@code maxEdits} above zero, names starting within that many typos of the prefix match too, closest first.
+     * Answered from {@link PlanetNameIndex}, never from the database. Prefixes are at most
+     * {@link #MAX_SEARCH_PREFIX} characters.
+     */
+    public List<Planet> search(String prefix, Integer maxEdits, Integer limit) {
+        return planetNameIndex.search(searchPrefix(prefix), maxEdits == null ? 0 : maxEdits, searchLimit(limit));
+    }
+    /**
+     * Hands every planet to the sink in id order while the cursor is open. The persistence context is
+     * cleared every {@link PlanetRepository#STREAM_FETCH_SIZE} rows so memory stays flat however big
+     * the table is. Read from the primary, as a backup or a migration must not miss recent writes.
+     */
+    @Transactional(readOnly = true)
+    public long export(Consumer<Planet> sink) {
+        return ReadFreshness.LATEST.read(() -> {
+            long exported = 0;
+            try (Stream<Planet> planets = planetRepository.streamAll()) {
+                Iterator<Planet> iterator = planets.iterator();
+                while (iterator.hasNext()) {
+                    sink.accept(iterator.next());
+                    if (++exported % PlanetRepository.STREAM_FETCH_SIZE == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            return exported;
+        });
+    }
+    // one statement, without loading the planet first; returns whether it existed. The name of a removed planet
+    // is not known here, and removals are rare enough to drop the whole name cache
+    @Transactional
+    @Caching(evict = {
+            @CacheEvict(PLANETS_BY_ID),
+            @CacheEvict(cacheNames = PLANETS_BY_NAME, allEntries = true)})
+    public boolean remove(Long id) {
+        if (planetRepository.deleteRowById(id) == 0) {
+            return false;
+        }
+        eventPublisher.publishEvent(PlanetsChangedEvent.removed(List.of(id)));
+        return true;
+    }
+    /**
+     * Deletes every planet whose terrain and climate match, ignoring case, and returns how many were deleted. At
+     * least one filter is required, and tag queries are not supported. The ids are read first and then deleted by
+     * id, {@link #MAX_PAGE_SIZE} at a time, so exactly the planets the in-memory indexes drop are deleted: a delete
+     * by filter would also take rows that started to match after the read, which the indexes would keep.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = {PLANETS_BY_ID, PLANETS_BY_NAME}, allEntries = true)
+    public int removeAll(String terrain, String climate) {
+        if (terrain == null && climate == null) {
+            throw new InvalidPlanetQueryException("A terrain or climate filter is required to delete planets");
+        }
+        if (TagFilter.isTagQuery(terrain) || TagFilter.isTagQuery(climate)) {
+            throw new InvalidPlanetQueryException("Tag queries cannot be used to delete planets");
+        }
+        String terrainFilter = QueryBuilder.normalize(terrain);
+        String climateFilter = QueryBuilder.normalize(climate);
+        List<Long> ids = planetRepository.findIdsByFilter(terrainFilter, climateFilter);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += MAX_PAGE_SIZE) {
+            deleted += planetRepository.deleteRowsByIds(ids.subList(from, Math.min(from + MAX_PAGE_SIZE, ids.size())));
+        }
+        eventPublisher.publishEvent(PlanetsChangedEvent.removed(ids));
+        return deleted;
+    }
+
+    /**
+     * Up to {@code count} of the ids, from {@code from} on.
+     */
+    private static RoaringBitmap idsFrom(RoaringBitmap ids, int from, int count) {
+        RoaringBitmap page = new RoaringBitmap();
+        PeekableIntIterator iterator = ids.getIntIterator();
+        iterator.advanceIfNeeded(from);
+        for (int taken = 0; taken < count && iterator.hasNext(); taken++) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * The planets of a page of ids, in id order, from the catalogue when it is enabled.
+     */
+    private List<Planet> load(RoaringBitmap ids) {
+        return planetCatalogue.isEnabled() ? planetCatalogue.list(ids) : findAllById(ids);
+    }
+
+    /**
+     * Loads the planets of a set of ids by primary key, a bounded IN list at a time, in id order.
+     */
+    private List<Planet> findAllById(RoaringBitmap ids) {
+        List<Planet> planets = new ArrayList<>(ids.getCardinality());
+        List<Long> chunk = new ArrayList<>(MAX_PAGE_SIZE);
+        IntIterator iterator = ids.getIntIterator();
+        while (iterator.hasNext()) {
+            chunk.add((long) iterator.next());
+            if (chunk.size() == MAX_PAGE_SIZE || !iterator.hasNext()) {
+                planetRepository.findAllById(chunk).forEach(planets::add);
+                chunk.clear();
+            }
+        }
+        planets.sort(Comparator.comparing(Planet::getId));
+        return planets;
     }
-    public void remove(Long id) {
-        planetRepository.deleteById(id);
+
+    static String searchPrefix(String prefix) {
+        if (prefix.length() > MAX_SEARCH_PREFIX) {
+            throw new InvalidPlanetQueryException("Search prefix longer than " + MAX_SEARCH_PREFIX + " characters");
+        }
+        return prefix;
+    }
+
+    static int searchLimit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_SEARCH_LIMIT;
+        }
+        return Math.min(Math.max(requested, 1), MAX_SEARCH_LIMIT);
+    }
+
+    private static int pageSize(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(Math.max(requested, 1), MAX_PAGE_SIZE);
     }
 }
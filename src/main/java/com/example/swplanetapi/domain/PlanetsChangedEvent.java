@@ -0,0 +1,50 @@
+package com.example.swplanetapi.domain;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Published after planets are written, for whatever keeps derived state about the catalogue in memory.
+ * Saved planets always carry their id. An event is local when this instance made the writes; the changes of
+ * other instances picked up from the database are published too, but are not local.
+ */
+public class PlanetsChangedEvent {
+
+    private final List<Planet> saved;
+    private final List<Long> removedIds;
+    private final boolean local;
+
+    private PlanetsChangedEvent(List<Planet> saved, List<Long> removedIds, boolean local) {
+        this.saved = saved;
+        this.removedIds = removedIds;
+        this.local = local;
+    }
+
+    public static PlanetsChangedEvent saved(Collection<Planet> planets) {
+        return new PlanetsChangedEvent(List.copyOf(planets), List.of(), true);
+    }
+
+    public static PlanetsChangedEvent removed(Collection<Long> ids) {
+        return new PlanetsChangedEvent(List.of(), List.copyOf(ids), true);
+    }
+
+    public static PlanetsChangedEvent savedElsewhere(Collection<Planet> planets) {
+        return new PlanetsChangedEvent(List.copyOf(planets), List.of(), false);
+    }
+
+    public static PlanetsChangedEvent removedElsewhere(Collection<Long> ids) {
+        return new PlanetsChangedEvent(List.of(), List.copyOf(ids), false);
+    }
+
+    public List<Planet> getSaved() {
+        return saved;
+    }
+
+    public List<Long> getRemovedIds() {
+        return removedIds;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+}
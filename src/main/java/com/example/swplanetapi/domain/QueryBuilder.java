@@ -3,13 +3,38 @@ package com.example.swplanetapi.domain;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 
+import java.util.Locale;
+
 public class QueryBuilder {
 
     private QueryBuilder() {
 
     }
+    /**
+     * Case-insensitive match on the climate and terrain of the given planet. The comparison runs against the
+     * lowercase generated columns, so it is a plain equality the indexes can serve rather than lower(column) = ?.
+     */
     public static Example<Planet> makeQuery(Planet planet) {
-        ExampleMatcher exampleMatcher = ExampleMatcher.matchingAll().withIgnoreCase().withIgnoreNullValues();
-        return Example.of(planet, exampleMatcher);
+        Planet probe = new Planet();
+        probe.setClimateLower(normalize(planet.getClimate()));
+        probe.setTerrainLower(normalize(planet.getTerrain()));
+        ExampleMatcher exampleMatcher = ExampleMatcher.matchingAll().withIgnoreNullValues();
+        return Example.of(probe, exampleMatcher);
+    }
+    /**
+     * Whether a query made by {@link #makeQuery} filters on anything, rather than reading the whole table.
+     */
+    public static boolean isFiltered(Example<?> example) {
+        if (!(example.getProbe() instanceof Planet)) {
+            return false;
+        }
+        Planet probe = (Planet) example.getProbe();
+        return probe.getClimateLower() != null || probe.getTerrainLower() != null;
+    }
+    /**
+     * Filter value as the case-insensitive query sees it, {@code null} meaning no filter.
+     */
+    public static String normalize(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
     }
 }
@@ -0,0 +1,95 @@
+package com.example.swplanetapi.domain;
+
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Planets over R2DBC for the reactive API. Plain SQL on the same table the JPA mapping creates; filters
+ * go through the lowercase generated columns and expect normalized values, like {@link PlanetRepository#findPageAfter}.
+ */
+@Repository
+@Profile("reactive")
+public class ReactivePlanetRepository {
+
+    static final String COLUMNS = "SELECT id, name, climate, terrain, version, last_modified FROM planets";
+    static final String INSERT_SQL = "INSERT INTO planets (name, climate, terrain) VALUES (:name, :climate, :terrain)";
+
+    private final DatabaseClient databaseClient;
+
+    public ReactivePlanetRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Mono<Planet> save(Planet planet) {
+        return databaseClient.sql(INSERT_SQL)
+                .bind("name", planet.getName())
+                .bind("climate", planet.getClimate())
+                .bind("terrain", planet.getTerrain())
+                .filter(statement -> statement.returnGeneratedValues("id"))
+                .map(row -> row.get("id", Long.class))
+                .one()
+                .map(id -> new Planet(id, planet.getName(), planet.getClimate(), planet.getTerrain()));
+    }
+    public Mono<Planet> findById(Long id) {
+        return databaseClient.sql(COLUMNS + " WHERE id = :id")
+                .bind("id", id)
+                .map(ReactivePlanetRepository::toPlanet)
+                .one();
+    }
+    public Mono<Planet> findByName(String name) {
+        return databaseClient.sql(COLUMNS + " WHERE name = :name")
+                .bind("name", name)
+                .map(ReactivePlanetRepository::toPlanet)
+                .one();
+    }
+    public Flux<Planet> findAll(String terrain, String climate) {
+        List<String> conditions = new ArrayList<>(2);
+        if (terrain != null) {
+            conditions.add("terrain_lower = :terrain");
+        }
+        if (climate != null) {
+            conditions.add("climate_lower = :climate");
+        }
+        String sql = COLUMNS + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions)) + " ORDER BY id";
+        DatabaseClient.GenericExecuteSpec query = databaseClient.sql(sql);
+        if (terrain != null) {
+            query = query.bind("terrain", terrain);
+        }
+        if (climate != null) {
+            query = query.bind("climate", climate);
+        }
+        return query.map(ReactivePlanetRepository::toPlanet).all();
+    }
+    public Flux<Planet> findAllById(Collection<Long> ids) {
+        return databaseClient.sql(COLUMNS + " WHERE id IN (:ids) ORDER BY id")
+                .bind("ids", ids)
+                .map(ReactivePlanetRepository::toPlanet)
+                .all();
+    }
+    public Mono<Integer> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM planets WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    private static Planet toPlanet(Row row) {
+        Planet planet = new Planet(row.get("id", Long.class), row.get("name", String.class),
+                row.get("climate", String.class), row.get("terrain", String.class));
+        planet.setVersion(row.get("version", Long.class));
+        // TIMESTAMP has no zone, Hibernate reads and writes it in the JVM's
+        LocalDateTime lastModified = row.get("last_modified", LocalDateTime.class);
+        planet.setLastModified(lastModified == null ? null : lastModified.atZone(ZoneId.systemDefault()).toInstant());
+        return planet;
+    }
+}
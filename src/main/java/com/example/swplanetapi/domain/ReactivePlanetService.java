@@ -0,0 +1,73 @@
+package com.example.swplanetapi.domain;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link PlanetService}, selected with the {@code reactive} profile. Lists are
+ * streamed row by row as the database produces them, so a slow client holds back the query instead of a thread.
+ */
+@Service
+@Profile("reactive")
+public class ReactivePlanetService {
+
+    private final ReactivePlanetRepository planetRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlanetIndex planetIndex;
+    private final PlanetNameIndex planetNameIndex;
+    public ReactivePlanetService(ReactivePlanetRepository planetRepository, ApplicationEventPublisher eventPublisher,
+                                 PlanetIndex planetIndex, PlanetNameIndex planetNameIndex) {
+        this.planetRepository = planetRepository;
+        this.eventPublisher = eventPublisher;
+        this.planetIndex = planetIndex;
+        this.planetNameIndex = planetNameIndex;
+    }
+    public Mono<Planet> create(Planet planet) {
+        return planetRepository.save(planet)
+                .doOnNext(planetCreated -> eventPublisher.publishEvent(PlanetsChangedEvent.saved(List.of(planetCreated))));
+    }
+    public Mono<Planet> get(Long id) {
+        return planetRepository.findById(id);
+    }
+    public Mono<Planet> getByName(String name) {
+        return planetRepository.findByName(name);
+    }
+    public Flux<Planet> list(String terrain, String climate) {
+        if (planetIndex.isMemoryResident()) {
+            return Flux.fromIterable(planetIndex.list(terrain, climate));
+        }
+        if (TagFilter.isTagQuery(terrain) || TagFilter.isTagQuery(climate)) {
+            return findAllById(planetIndex.find(terrain, climate));
+        }
+        return planetRepository.findAll(QueryBuilder.normalize(terrain), QueryBuilder.normalize(climate));
+    }
+    // in memory, so answering on the calling thread does not block
+    public Flux<Planet> search(String prefix, Integer maxEdits, Integer limit) {
+        return Flux.defer(() -> Flux.fromIterable(planetNameIndex.search(PlanetService.searchPrefix(prefix), maxEdits == null ? 0 : maxEdits,
+                PlanetService.searchLimit(limit))));
+    }
+    public Mono<Void> remove(Long id) {
+        return planetRepository.deleteById(id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new EmptyResultDataAccessException("No planet with id " + id + " exists", 1))
+                        : Mono.<Void>empty())
+                .doOnSuccess(done -> eventPublisher.publishEvent(PlanetsChangedEvent.removed(List.of(id))));
+    }
+
+    /**
+     * Streams the planets of a set of ids, one bounded IN list at a time and only when the previous one is drained.
+     */
+    private Flux<Planet> findAllById(RoaringBitmap ids) {
+        return Flux.fromIterable(ids)
+                .map(Integer::longValue)
+                .buffer(PlanetService.MAX_PAGE_SIZE)
+                .concatMap(planetRepository::findAllById);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.swplanetapi.domain;
+
+import java.util.function.Supplier;
+
+/**
+ * How far behind the primary a read may be, for reads that a lagging replica would get wrong. With
+ * {@code planets.datasource.replica-urls} the routing data source honours it; without replicas every read goes to
+ * the one database anyway. Reads that are not marked may go to any replica.
+ */
+public enum ReadFreshness {
+
+    /**
+     * The result is cached for every client, not just returned to the one that asked. Read from the primary while
+     * this instance wrote within {@code planets.datasource.sticky-after-write}, or a replica that has not caught up
+     * would cache again what the write just evicted, for the whole time to live.
+     */
+    SHARED,
+    /**
+     * The result replaces in-memory state wholesale, or leaves the service as an export. Always read from the
+     * primary, or the writes a replica is missing are dropped.
+     */
+    LATEST;
+
+    private static final ThreadLocal<ReadFreshness> current = new ThreadLocal<>();
+
+    /**
+     * What the reads on the current thread are marked with, {@code null} when nothing.
+     */
+    public static ReadFreshness current() {
+        return current.get();
+    }
+
+    public <T> T read(Supplier<T> reads) {
+        ReadFreshness previous = current.get();
+        // a nested mark can only make the reads fresher
+        current.set(previous == null || previous.compareTo(this) < 0 ? this : previous);
+        try {
+            return reads.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    public void run(Runnable reads) {
+        read(() -> {
+            reads.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.swplanetapi.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tag query on one of the comma-separated planet attributes, written as {@code any:arid,temperate} or
+ * {@code all:grasslands,mountains}. Values without one of these prefixes are not tag queries and keep
+ * matching the whole attribute, as they always have: {@code mountains} does not match a terrain of
+ * {@code "grasslands, mountains"}, one tag is asked for as {@code any:mountains}.
+ */
+public class TagFilter {
+
+    public enum Mode {
+        ANY, ALL
+    }
+
+    private static final String ANY_PREFIX = "any:";
+    private static final String ALL_PREFIX = "all:";
+
+    private final Mode mode;
+    private final Set<String> tags;
+
+    private TagFilter(Mode mode, Set<String> tags) {
+        this.mode = mode;
+        this.tags = tags;
+    }
+
+    /**
+     * @return the filter, or {@code null} when the value is not a tag query
+     */
+    public static TagFilter parse(String value) {
+        if (!isTagQuery(value)) {
+            return null;
+        }
+        Mode mode = value.regionMatches(true, 0, ANY_PREFIX, 0, ANY_PREFIX.length()) ? Mode.ANY : Mode.ALL;
+        Set<String> tags = split(value.substring(ANY_PREFIX.length()));
+        if (tags.isEmpty()) {
+            throw new InvalidPlanetQueryException("Tag query without tags: " + value);
+        }
+        return new TagFilter(mode, tags);
+    }
+
+    public static boolean isTagQuery(String value) {
+        return value != null && (value.regionMatches(true, 0, ANY_PREFIX, 0, ANY_PREFIX.length())
+                || value.regionMatches(true, 0, ALL_PREFIX, 0, ALL_PREFIX.length()));
+    }
+
+    /**
+     * Normalized tags of an attribute value, e.g. {@code "Grasslands, mountains"} gives {@code grasslands}
+     * and {@code mountains}.
+     */
+    public static Set<String> split(String value) {
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(value.split(","))
+                .map(tag -> tag.trim().toLowerCase(Locale.ROOT))
+                .filter(tag -> !tag.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public Set<String> getTags() {
+        return tags;
+    }
+}
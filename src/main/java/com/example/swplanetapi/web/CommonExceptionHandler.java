@@ -0,0 +1,37 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.InvalidPlanetQueryException;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/**
+ * Error mapping shared by the servlet and the reactive API. Both stacks pick up {@code @ExceptionHandler}
+ * methods declared on the interfaces of an advice, so each advice only adds what is specific to its stack.
+ */
+public interface CommonExceptionHandler {
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    default ResponseEntity<Object> handleConflict(DataIntegrityViolationException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidPlanetQueryException.class)
+    default ResponseEntity<Object> handleInvalidQuery(InvalidPlanetQueryException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+    @ExceptionHandler(RuntimeJsonMappingException.class)
+    default ResponseEntity<Object> handleUnreadableEntry(RuntimeJsonMappingException exception) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(exception.getMessage());
+    }
+    @ExceptionHandler(EmptyResultDataAccessException.class)
+    default ResponseEntity<Object> handleBadRequest(EmptyResultDataAccessException exception) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(exception.getMessage());
+    }
+
+}
@@ -1,47 +1,168 @@
 package com.example.swplanetapi.web;
 
 import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetBatchResult;
+import com.example.swplanetapi.domain.PlanetBatchService;
+import com.example.swplanetapi.domain.PlanetIngestQueue;
+import com.example.swplanetapi.domain.PlanetIngestTicket;
+import com.example.swplanetapi.domain.PlanetPage;
 import com.example.swplanetapi.domain.PlanetService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.util.List;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("planets")
 public class PlanetController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    static final String DELETED_COUNT_HEADER = "X-Deleted-Count";
+    static final String PREFER_HEADER = "Prefer";
+    static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    static final String RESPOND_ASYNC = "respond-async";
+    static final String INGEST_RETRY_AFTER_SECONDS = "1";
+
     @Autowired
     private PlanetService planetService;
+    @Autowired
+    private PlanetBatchService planetBatchService;
+    @Autowired
+    private PlanetIngestQueue planetIngestQueue;
+    @Autowired
+    private ObjectMapper objectMapper;
 
+    // with Prefer: respond-async the planet is only queued: 202 and a ticket to poll, or 503 while the queue is full
     @PostMapping
-    public ResponseEntity<Planet> create(@RequestBody @Valid Planet planet) {
+    public ResponseEntity<?> create(@RequestBody @Valid Planet planet,
+                                    @RequestHeader(value = PREFER_HEADER, required = false) List<String> prefer) {
+        if (prefer != null && prefer.stream().anyMatch(RESPOND_ASYNC::equalsIgnoreCase)) {
+            return planetIngestQueue.submit(planet)
+                    .<ResponseEntity<?>>map(ticket -> ResponseEntity.accepted()
+                            .location(URI.create("/planets/ingest/" + ticket.getId()))
+                            .header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC)
+                            .body(ticket))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, INGEST_RETRY_AFTER_SECONDS)
+                            .build());
+        }
         Planet planetCreated = planetService.create(planet);
         return ResponseEntity.status(HttpStatus.CREATED).body(planetCreated);
     }
+    @GetMapping("/ingest/{ticket}")
+    public ResponseEntity<PlanetIngestTicket> ingestStatus(@PathVariable("ticket") String ticket) {
+        return planetIngestQueue.status(ticket)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<PlanetBatchResult> createAll(InputStream body) throws IOException {
+        // a JSON array and a sequence of NDJSON lines read the same way, one planet at a time
+        try (MappingIterator<Planet> planets = objectMapper.readerFor(Planet.class).readValues(body)) {
+            return ResponseEntity.ok(planetBatchService.createAll(planets));
+        }
+    }
+    // ETag and Last-Modified let Spring answer If-None-Match / If-Modified-Since with 304 and no body; the
+    // lookups are cached, so a poll of an unchanged planet reaches neither the database nor Jackson
     @GetMapping("/{id}")
     public ResponseEntity<Planet> get(@PathVariable("id") Long id) {
-        return planetService.get(id).map(planet -> ResponseEntity.ok(planet))
+        return planetService.get(id).map(PlanetEtags::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
     @GetMapping("/name/{name}")
     public ResponseEntity<Planet> getByName(@PathVariable("name") String name) {
-        return planetService.getByName(name).map(planet -> ResponseEntity.ok(planet))
+        return planetService.getByName(name).map(PlanetEtags::ok)
                 .orElseGet(() -> ResponseEntity.notFound().build());
     }
+    @GetMapping("/search")
+    public ResponseEntity<List<Planet>> search(@RequestParam String prefix,
+                                               @RequestParam(required = false) Integer fuzzy,
+                                               @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(planetService.search(prefix, fuzzy, limit));
+    }
     @GetMapping
     public ResponseEntity<List<Planet>> list(@RequestParam(required = false) String terrain,
-                                             @RequestParam(required = false) String climate) {
+                                             @RequestParam(required = false) String climate,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer page,
+                                             @RequestParam(required = false) Integer size) {
+        if (limit != null || cursor != null) {
+            PlanetPage planetPage = planetService.listPage(terrain, climate, cursor, limit);
+            ResponseEntity.BodyBuilder response = PlanetEtags.ok(PlanetEtags.of(planetPage.getContent(), planetPage.getNext()));
+            if (planetPage.getNext() != null) {
+                response.header(NEXT_CURSOR_HEADER, planetPage.getNext());
+            }
+            return response.body(planetPage.getContent());
+        }
+        if (page != null || size != null) {
+            Page<Planet> planets = planetService.list(terrain, climate, page, size);
+            return PlanetEtags.ok(PlanetEtags.of(planets.getContent(), planets.getTotalElements()))
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(planets.getTotalElements()))
+                    .body(planets.getContent());
+        }
         List<Planet> planets = planetService.list(terrain, climate);
-        return ResponseEntity.ok(planets);
+        return PlanetEtags.ok(PlanetEtags.of(planets)).body(planets);
+    }
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> export(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        // NDJSON unless the client explicitly asks for a plain JSON array
+        boolean jsonArray = accept != null && MediaType.parseMediaTypes(accept).stream()
+                .anyMatch(MediaType.APPLICATION_JSON::equalsTypeAndSubtype);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                generator.setRootValueSeparator(null);
+                if (jsonArray) {
+                    generator.writeStartArray();
+                }
+                planetService.export(planet -> {
+                    try {
+                        generator.writeObject(planet);
+                        if (!jsonArray) {
+                            generator.writeRaw('\n');
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                if (jsonArray) {
+                    generator.writeEndArray();
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(jsonArray ? MediaType.APPLICATION_JSON : MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> remove(@PathVariable("id") Long id) {
-        planetService.remove(id);
-        return ResponseEntity.noContent().build();
+        return planetService.remove(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+    @DeleteMapping
+    public ResponseEntity<Void> removeAll(@RequestParam(required = false) String terrain,
+                                          @RequestParam(required = false) String climate) {
+        int deleted = planetService.removeAll(terrain, climate);
+        return ResponseEntity.noContent().header(DELETED_COUNT_HEADER, String.valueOf(deleted)).build();
     }
 
 }
@@ -0,0 +1,71 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.Planet;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collection;
+
+/**
+ * Entity tags of planet responses, derived from ids and versions so a {@code 304} can be answered without
+ * serializing anything; Spring compares them with {@code If-None-Match} once the controller returns.
+ * <p>
+ * The tags are weak. The same planets are sent as JSON, CBOR or Smile depending on {@code Accept}, and a strong
+ * tag would claim those bytes identical; every tagged response also varies by {@code Accept}, so a shared cache
+ * keeps one copy per format and never revalidates one format with another. Weak tags are also the only ones
+ * Tomcat compresses. {@code If-None-Match} compares weakly, so polling works the same.
+ */
+final class PlanetEtags {
+
+    private PlanetEtags() {
+    }
+
+    /**
+     * {@code 200} with the planet's tag and, when known, its modification time.
+     */
+    static ResponseEntity<Planet> ok(Planet planet) {
+        ResponseEntity.BodyBuilder response = ok(of(planet));
+        if (planet.getLastModified() != null) {
+            response.lastModified(planet.getLastModified());
+        }
+        return response.body(planet);
+    }
+
+    /**
+     * {@code 200} with a tag, for a body whose format is negotiated.
+     */
+    static ResponseEntity.BodyBuilder ok(String etag) {
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT);
+    }
+
+    static String of(Planet planet) {
+        return "W/\"" + planet.getId() + "." + version(planet) + "\"";
+    }
+
+    /**
+     * A 64-bit FNV-1a hash over the ids and versions in order, plus {@code extra} for headers that describe the
+     * list (such as a total count) and would otherwise be served stale from the client's copy.
+     */
+    static String of(Collection<Planet> planets, Object... extra) {
+        long hash = 0xcbf29ce484222325L;
+        for (Planet planet : planets) {
+            hash = mix(mix(hash, planet.getId() == null ? 0 : planet.getId()), version(planet));
+        }
+        for (Object value : extra) {
+            hash = mix(hash, value == null ? 0 : value.hashCode());
+        }
+        return "W/\"" + planets.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    private static long version(Planet planet) {
+        return planet.getVersion() == null ? 0 : planet.getVersion();
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.Planet;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+/**
+ * Writes a {@link Planet} field by field instead of through Jackson's bean serializer, which goes through a
+ * property writer, and an accessor, per field. Field names are encoded once and copied as bytes, values go
+ * straight to the generator and thus to the response stream. The output is the same as the bean serializer's,
+ * {@code null}s included, so clients and the {@code @JsonIgnore}d columns are unaffected; a field added to
+ * {@code Planet} has to be added here too. {@code PlanetJsonBenchmark} compares the two.
+ * <p>
+ * Reading planets still goes through the bean deserializer.
+ */
+@JsonComponent
+public class PlanetJsonSerializer extends StdSerializer<Planet> {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString CLIMATE = new SerializedString("climate");
+    private static final SerializedString TERRAIN = new SerializedString("terrain");
+
+    public PlanetJsonSerializer() {
+        super(Planet.class);
+    }
+
+    @Override
+    public void serialize(Planet planet, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject(planet);
+        generator.writeFieldName(ID);
+        if (planet.getId() == null) {
+            generator.writeNull();
+        } else {
+            generator.writeNumber(planet.getId());
+        }
+        generator.writeFieldName(NAME);
+        generator.writeString(planet.getName());
+        generator.writeFieldName(CLIMATE);
+        generator.writeString(planet.getClimate());
+        generator.writeFieldName(TERRAIN);
+        generator.writeString(planet.getTerrain());
+        generator.writeEndObject();
+    }
+}
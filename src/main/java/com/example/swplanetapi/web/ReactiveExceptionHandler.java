@@ -0,0 +1,20 @@
+package com.example.swplanetapi.web;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+@ControllerAdvice
+@Profile("reactive")
+public class ReactiveExceptionHandler implements CommonExceptionHandler {
+
+    // same status as the servlet API for a planet that fails bean validation
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Object> handleMethodArgumentNotValid(WebExchangeBindException exception) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.ReactivePlanetService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * The {@code /planets} API on WebFlux, active with the {@code reactive} profile instead of {@link PlanetController}.
+ * Lists are written as they are read, as a JSON array or, for {@code application/x-ndjson}, one planet per line.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("planets")
+public class ReactivePlanetController {
+
+    @Autowired
+    private ReactivePlanetService planetService;
+
+    @PostMapping
+    public Mono<ResponseEntity<Planet>> create(@RequestBody @Valid Planet planet) {
+        return planetService.create(planet)
+                .map(planetCreated -> ResponseEntity.status(HttpStatus.CREATED).body(planetCreated));
+    }
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Planet>> get(@PathVariable("id") Long id) {
+        return planetService.get(id).map(PlanetEtags::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    @GetMapping("/name/{name}")
+    public Mono<ResponseEntity<Planet>> getByName(@PathVariable("name") String name) {
+        return planetService.getByName(name).map(PlanetEtags::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Planet> list(@RequestParam(required = false) String terrain,
+                             @RequestParam(required = false) String climate) {
+        return planetService.list(terrain, climate);
+    }
+    @GetMapping("/search")
+    public Flux<Planet> search(@RequestParam String prefix,
+                               @RequestParam(required = false) Integer fuzzy,
+                               @RequestParam(required = false) Integer limit) {
+        return planetService.search(prefix, fuzzy, limit);
+    }
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<Planet> export() {
+        return planetService.list(null, null);
+    }
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> remove(@PathVariable("id") Long id) {
+        return planetService.remove(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+}
@@ -15,6 +15,7 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import java.util.Arrays;
 import java.util.List;
 
+import static com.example.swplanetapi.common.PlanetConstants.GENERATED_FIELDS;
 import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -49,13 +50,13 @@ public class PlanetIT {
         ResponseEntity<Planet> sut = restTemplate.getForEntity("/planets/1", Planet.class);
 
         assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(sut.getBody()).isEqualTo(TATOOINE);
+        assertThat(sut.getBody()).usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
     }
     @Test
     public void getPlanetByName_ReturnsPlanet() {
         ResponseEntity<Planet> sut = restTemplate.getForEntity("/planets/name/Tatooine", Planet.class);
         assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(sut.getBody()).isEqualTo(TATOOINE);
+        assertThat(sut.getBody()).usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
     }
 
     @Test
@@ -65,7 +66,8 @@ public class PlanetIT {
         ResponseEntity<Planet[]> sut = restTemplate.getForEntity(url, Planet[].class);
 
         assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(Arrays.stream(sut.getBody()).findFirst().get()).isEqualTo(TATOOINE);
+        assertThat(Arrays.stream(sut.getBody()).findFirst().get())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
         assertThat(sut.getBody().length).isEqualTo(1);
 
         ResponseEntity<Planet[]> sut2 = restTemplate.getForEntity("/planets", Planet[].class);
@@ -83,7 +85,8 @@ public class PlanetIT {
         ResponseEntity<Planet[]> sut = restTemplate.getForEntity(url, Planet[].class);
 
         assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(Arrays.stream(sut.getBody()).findFirst().get()).isEqualTo(TATOOINE);
+        assertThat(Arrays.stream(sut.getBody()).findFirst().get())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
         assertThat(sut.getBody().length).isEqualTo(1);
 
     }
@@ -95,10 +98,28 @@ public class PlanetIT {
         ResponseEntity<Planet[]> sut = restTemplate.getForEntity(url, Planet[].class);
 
         assertThat(sut.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(Arrays.stream(sut.getBody()).findFirst().get()).isEqualTo(TATOOINE);
+        assertThat(Arrays.stream(sut.getBody()).findFirst().get())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
         assertThat(sut.getBody().length).isEqualTo(1);
     }
 
+    @Test
+    public void listPlanets_WithLimit_ReturnsPages() {
+
+        ResponseEntity<Planet[]> firstPage = restTemplate.getForEntity("/planets?limit=2", Planet[].class);
+
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(firstPage.getBody()).hasSize(2);
+        String next = firstPage.getHeaders().getFirst("X-Next-Cursor");
+        assertThat(next).isNotNull();
+
+        ResponseEntity<Planet[]> lastPage = restTemplate.getForEntity("/planets?limit=2&cursor=" + next, Planet[].class);
+
+        assertThat(lastPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(lastPage.getBody()).hasSize(1);
+        assertThat(lastPage.getHeaders().getFirst("X-Next-Cursor")).isNull();
+    }
+
     @Test
     public void removePlanet_ReturnsNoContent() {
 
@@ -0,0 +1,54 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetRepository;
+import com.example.swplanetapi.domain.QueryBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+
+@DataJpaTest
+@Import({MetricsAspect.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration(AopAutoConfiguration.class)
+public class MetricsAspectRepositoryTest {
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void listPlanets_AreTimedAsFilteredOrNot() {
+
+        planetRepository.findAll(QueryBuilder.makeQuery(new Planet(TATOOINE.getClimate(), TATOOINE.getTerrain())));
+        planetRepository.findAll(QueryBuilder.makeQuery(new Planet()));
+        planetRepository.findPageAfter(0, null, "arid", PageRequest.of(0, 10));
+
+        Assertions.assertThat(timerCount("findAll", true)).isEqualTo(1);
+        Assertions.assertThat(timerCount("findAll", false)).isEqualTo(1);
+        Assertions.assertThat(timerCount("findPageAfter", true)).isEqualTo(1);
+    }
+
+    @Test
+    public void getPlanet_IsTimedAsUnfiltered() {
+
+        planetRepository.findByName(TATOOINE.getName());
+
+        Assertions.assertThat(timerCount("findByName", false)).isEqualTo(1);
+    }
+
+    private long timerCount(String method, boolean filtered) {
+        return meterRegistry.get(MetricsAspect.REPOSITORY_TIMER)
+                .tag("method", method).tag("filtered", String.valueOf(filtered)).timer().count();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.PlanetCatalogue;
+import com.example.swplanetapi.domain.PlanetIndex;
+import com.example.swplanetapi.domain.PlanetListKeyGenerator;
+import com.example.swplanetapi.domain.PlanetNameIndex;
+import com.example.swplanetapi.domain.PlanetRepository;
+import com.example.swplanetapi.domain.PlanetService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.aop.AopAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.EntityManager;
+import java.util.Optional;
+
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+import static org.mockito.Mockito.*;
+
+public class MetricsAspectTest {
+
+    private final PlanetRepository planetRepository = mock(PlanetRepository.class);
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(AopAutoConfiguration.class, CacheAutoConfiguration.class))
+            .withUserConfiguration(MetricsAspect.class, CacheConfig.class, PlanetListKeyGenerator.class)
+            .withPropertyValues("spring.cache.type=simple")
+            .withBean(SimpleMeterRegistry.class)
+            .withBean(PlanetService.class, () -> new PlanetService(planetRepository, mock(EntityManager.class),
+                    mock(ApplicationEventPublisher.class), mock(PlanetIndex.class), mock(PlanetNameIndex.class),
+                    mock(PlanetCatalogue.class)));
+
+    @Test
+    public void getPlanet_IsTimedByMethod_IncludingCacheHits() {
+
+        when(planetRepository.findById(1L)).thenReturn(Optional.of(TATOOINE));
+
+        contextRunner.run(context -> {
+            PlanetService planetService = context.getBean(PlanetService.class);
+            planetService.get(1L);
+            planetService.get(1L);
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            Assertions.assertThat(meterRegistry.get(PlanetService.TIMER_NAME)
+                    .tag("class", PlanetService.class.getName()).tag("method", "get").timer().count()).isEqualTo(2);
+            verify(planetRepository, times(1)).findById(1L);
+        });
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.PlanetRepository;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+
+@DataJpaTest(properties = {"planets.diagnostics.enabled=true", "planets.diagnostics.slow-query-threshold=0ms"})
+@Import(QueryDiagnosticsConfig.class)
+@ExtendWith(OutputCaptureExtension.class)
+public class QueryDiagnosticsTest {
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    @Autowired
+    private QueryDiagnostics queryDiagnostics;
+
+    @BeforeEach
+    public void setUp() {
+        queryDiagnostics.reset();
+    }
+
+    @Test
+    public void findAllById_WithDifferentIdCounts_IsOneShape() {
+
+        planetRepository.findAllById(List.of(1L, 2L, 3L));
+        planetRepository.findAllById(List.of(4L, 5L));
+
+        Assertions.assertThat(queryDiagnostics.slowest(10))
+                .filteredOn(shape -> shape.getSql().contains("in (?)"))
+                .singleElement()
+                .extracting(QueryShape::getCount).isEqualTo(2L);
+    }
+
+    @Test
+    public void slowQuery_IsLoggedWithParameters(CapturedOutput output) {
+
+        planetRepository.findByName(TATOOINE.getName());
+
+        Assertions.assertThat(output).contains("Slow query").contains("[[" + TATOOINE.getName() + "]]");
+    }
+
+    @Test
+    public void repeatedStatement_IsLoggedAtRequestEnd(CapturedOutput output) {
+
+        queryDiagnostics.beginRequest();
+        for (int i = 0; i < 6; i++) {
+            planetRepository.findByName("planet-" + i);
+        }
+        queryDiagnostics.endRequest("GET /test");
+
+        Assertions.assertThat(output).contains("GET /test ran 6 statements").contains("the most repeated 6 times");
+    }
+
+    @Test
+    public void shape_CollapsesLiteralsAndInLists() {
+
+        Assertions.assertThat(QueryDiagnostics.shape("select *  from planets\n where name = 'Hoth' and id in (?, ?,?) limit 10"))
+                .isEqualTo("select * from planets where name = ? and id in (?) limit ?");
+    }
+}
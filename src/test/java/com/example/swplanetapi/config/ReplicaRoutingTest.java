@@ -0,0 +1,188 @@
+package com.example.swplanetapi.config;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetsChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "spring.datasource.username=sa", "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "planets.datasource.replica-urls=" + ReplicaRoutingTest.REPLICA_URL})
+@AutoConfigureMockMvc
+public class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate primary;
+
+    @Autowired
+    private PrimaryStickiness stickiness;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SteppingClock clock;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeAll
+    public static void createReplica() {
+        replica.execute("CREATE TABLE IF NOT EXISTS planets (id bigint auto_increment primary key, "
+                + "name varchar(255) not null unique, climate varchar(255) not null, terrain varchar(255) not null, "
+                + "climate_lower varchar(255) generated always as (lower(climate)), "
+                + "terrain_lower varchar(255) generated always as (lower(terrain)), "
+                + "version bigint default 0 not null, last_modified timestamp(6) default current_timestamp(6))");
+        replica.update("MERGE INTO planets (id, name, climate, terrain) KEY (id) VALUES (1000, 'Replicated', 'arid', 'desert')");
+    }
+
+    @BeforeEach
+    public void beforeEach() {
+        // past the window of the writes made by earlier tests
+        clock.advance(Duration.ofMinutes(1));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void getPlanet_ReadsFromReplica() throws Exception {
+
+        mockMvc.perform(get("/planets/1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Replicated"))
+                .andExpect(cookie().doesNotExist(ReplicaRoutingConfig.STICKY_COOKIE));
+    }
+
+    @Test
+    public void createPlanet_WritesToPrimary_AndReadsItBackWithTheStickyCookie() throws Exception {
+        Planet planet = new Planet("Written", "temperate", "grasslands");
+
+        Cookie sticky = mockMvc.perform(post("/planets").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(planet)))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReplicaRoutingConfig.STICKY_COOKIE))
+                .andReturn().getResponse().getCookie(ReplicaRoutingConfig.STICKY_COOKIE);
+
+        Assertions.assertThat(replica.queryForObject("SELECT count(*) FROM planets WHERE name = 'Written'", Integer.class))
+                .isZero();
+        mockMvc.perform(get("/planets/name/Written").cookie(sticky))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void exportPlanets_ReadsFromPrimary() throws Exception {
+        primary.update("MERGE INTO planets (id, name, climate, terrain) KEY (id) VALUES (3000, 'Exported', 'arid', 'desert')");
+
+        MvcResult result = mockMvc.perform(get("/planets/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Exported")))
+                .andExpect(content().string(not(containsString("Replicated"))));
+    }
+
+    @Test
+    public void removePlanet_ReadThroughTheReplica_DoesNotCacheItAgain() throws Exception {
+        primary.update("INSERT INTO planets (id, name, climate, terrain) VALUES (2000, 'Removed', 'arid', 'desert')");
+        replica.update("MERGE INTO planets (id, name, climate, terrain) KEY (id) VALUES (2000, 'Removed', 'arid', 'desert')");
+        mockMvc.perform(get("/planets/2000"))
+                .andExpect(status().isOk());
+
+        Cookie sticky = mockMvc.perform(delete("/planets/2000"))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getCookie(ReplicaRoutingConfig.STICKY_COOKIE);
+
+        // another client, without the cookie: the replica still has the planet, but this read fills the cache
+        mockMvc.perform(get("/planets/2000"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/planets/2000").cookie(sticky))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void planetsChangedElsewhere_DoNotMakeReadsSticky() {
+
+        eventPublisher.publishEvent(PlanetsChangedEvent.savedElsewhere(List.of(new Planet(4000L, "Caught up", "arid", "desert"))));
+
+        Assertions.assertThat(stickiness.isSticky()).isFalse();
+        Assertions.assertThat(stickiness.instanceWroteRecently()).isFalse();
+    }
+
+    @TestConfiguration
+    static class ClockConfig {
+
+        @Bean
+        public SteppingClock clock() {
+            return new SteppingClock();
+        }
+    }
+
+    static class SteppingClock extends Clock {
+
+        private volatile Instant now = Instant.now();
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
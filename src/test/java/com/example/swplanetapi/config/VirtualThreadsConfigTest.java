@@ -0,0 +1,65 @@
+package com.example.swplanetapi.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.*;
+
+public class VirtualThreadsConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withUserConfiguration(VirtualThreadsConfig.class);
+
+    @Test
+    public void virtualThreads_ByDefault_AreDisabled() {
+        contextRunner.run(context -> Assertions.assertThat(context).doesNotHaveBean(VirtualThreadsConfig.class));
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void virtualThreads_WhenEnabledOnJava21_RunRequestsOnVirtualThreads() {
+        assumeTrue(Runtime.version().feature() >= 21);
+
+        contextRunner.withPropertyValues("planets.virtual-threads.enabled=true").run(context -> {
+            TomcatProtocolHandlerCustomizer customizer = context.getBean(TomcatProtocolHandlerCustomizer.class);
+            ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+            customizer.customize(protocolHandler);
+
+            ArgumentCaptor<ExecutorService> executor = ArgumentCaptor.forClass(ExecutorService.class);
+            verify(protocolHandler).setExecutor(executor.capture());
+            Future<Thread> thread = executor.getValue().submit(Thread::currentThread);
+            Assertions.assertThat(Thread.class.getMethod("isVirtual").invoke(thread.get())).isEqualTo(true);
+        });
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void virtualThreads_OnContextClose_ShutsTheExecutorDown() {
+        assumeTrue(Runtime.version().feature() >= 21);
+        ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+
+        contextRunner.withPropertyValues("planets.virtual-threads.enabled=true").run(context ->
+                context.getBean(TomcatProtocolHandlerCustomizer.class).customize(protocolHandler));
+
+        ArgumentCaptor<ExecutorService> executor = ArgumentCaptor.forClass(ExecutorService.class);
+        verify(protocolHandler).setExecutor(executor.capture());
+        Assertions.assertThat(executor.getValue().isShutdown()).isTrue();
+    }
+
+    @Test
+    public void virtualThreads_WhenEnabledBeforeJava21_FailStartup() {
+        assumeTrue(Runtime.version().feature() < 21);
+
+        contextRunner.withPropertyValues("planets.virtual-threads.enabled=true").run(context ->
+                Assertions.assertThat(context).hasFailed()
+                        .getFailure().hasRootCauseInstanceOf(NoSuchMethodException.class));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.swplanetapi.domain;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+
+@DataJpaTest
+@Import({PlanetBatchService.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@TestPropertySource(properties = "planets.batch.chunk-size=2")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every chunk commits on its own, like in production
+@Sql(scripts = "/remove_planets.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetBatchServiceTest {
+
+    @Autowired
+    private PlanetBatchService planetBatchService;
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void createPlanets_WithValidData_InsertsAllChunks() {
+
+        PlanetBatchResult sut = planetBatchService.createAll(List.of(
+                new Planet("Tatooine", "arid", "desert"),
+                new Planet("Alderaan", "temperate", "grasslands, mountains"),
+                new Planet("Yavin IV", "temperate, tropical", "jungle, rainforests")).iterator());
+
+        Assertions.assertThat(sut.getReceived()).isEqualTo(3);
+        Assertions.assertThat(sut.getCreated()).isEqualTo(3);
+        Assertions.assertThat(sut.getErrors()).isEmpty();
+        Assertions.assertThat(planetRepository.count()).isEqualTo(3);
+        Assertions.assertThat(planetRepository.findByName("Yavin IV")).isNotEmpty();
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void createPlanets_WithInvalidAndExistingData_ReportsEachEntry() {
+
+        double invalidRows = rowsCounted("invalid");
+        double conflictingRows = rowsCounted("conflict");
+        PlanetBatchResult sut = planetBatchService.createAll(List.of(
+                new Planet("Hoth", "frozen", "tundra"),
+                INVALID_PLANET,
+                new Planet(TATOOINE.getName(), "arid", "desert"),
+                new Planet("Hoth", "frozen", "ice caves"),
+                new Planet("Dagobah", "murky", "swamp")).iterator());
+
+        Assertions.assertThat(sut.getReceived()).isEqualTo(5);
+        Assertions.assertThat(sut.getCreated()).isEqualTo(2);
+        Assertions.assertThat(sut.getErrors()).extracting(PlanetBatchError::getIndex, PlanetBatchError::getReason)
+                .containsExactly(
+                        Assertions.tuple(1, PlanetBatchError.Reason.INVALID),
+                        Assertions.tuple(2, PlanetBatchError.Reason.CONFLICT),
+                        Assertions.tuple(3, PlanetBatchError.Reason.CONFLICT));
+        Assertions.assertThat(planetRepository.count()).isEqualTo(5);
+        Assertions.assertThat(rowsCounted("invalid") - invalidRows).isEqualTo(1);
+        Assertions.assertThat(rowsCounted("conflict") - conflictingRows).isEqualTo(2);
+    }
+
+    @Test
+    public void createPlanets_WithUnreadableEntry_KeepsTheEntriesBeforeIt() throws Exception {
+
+        MappingIterator<Planet> planets = new ObjectMapper().readerFor(Planet.class).readValues(
+                "[{\"name\": \"Hoth\", \"climate\": \"frozen\", \"terrain\": \"tundra\"},"
+                        + " {\"name\": \"Dagobah\", \"climate\": \"murky\", \"terrain\": \"swamp\"},"
+                        + " {\"name\": \"Bespin\", \"climate\": \"temperate\", \"terrain\": \"gas giant\"},"
+                        + " {\"name\": [1, 2]}, {\"name\": \"Endor\", \"climate\": \"temperate\", \"terrain\": \"forests\"}]");
+
+        PlanetBatchResult sut = planetBatchService.createAll(planets);
+
+        Assertions.assertThat(sut.getReceived()).isEqualTo(4);
+        Assertions.assertThat(sut.getCreated()).isEqualTo(3);
+        Assertions.assertThat(sut.getErrors()).extracting(PlanetBatchError::getIndex, PlanetBatchError::getReason)
+                .containsExactly(Assertions.tuple(3, PlanetBatchError.Reason.UNREADABLE));
+        Assertions.assertThat(planetRepository.findByName("Bespin")).isNotEmpty();
+        Assertions.assertThat(planetRepository.findByName("Endor")).isEmpty();
+    }
+
+    @Test
+    public void createPlanets_WithListener_HandsOverEachChunkAsStored() {
+
+        List<List<Planet>> chunks = new ArrayList<>();
+        planetBatchService.createAll(List.of(
+                new Planet("Tatooine", "arid", "desert"),
+                new Planet("Alderaan", "temperate", "grasslands, mountains"),
+                new Planet("Yavin IV", "temperate, tropical", "jungle, rainforests")).iterator(), chunks::add);
+
+        Assertions.assertThat(chunks).hasSize(2);
+        Assertions.assertThat(chunks.get(0)).extracting(Planet::getName).containsExactlyInAnyOrder("Tatooine", "Alderaan");
+        Assertions.assertThat(chunks.get(1)).extracting(Planet::getId)
+                .containsExactly(planetRepository.findByName("Yavin IV").orElseThrow().getId());
+    }
+
+    private double rowsCounted(String outcome) {
+        return meterRegistry.counter(PlanetBatchService.ROWS_COUNTER, "outcome", outcome).count();
+    }
+}
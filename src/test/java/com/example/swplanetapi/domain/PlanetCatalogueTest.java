@@ -0,0 +1,211 @@
+package com.example.swplanetapi.domain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlanetCatalogueTest {
+
+    private PlanetCatalogue planetCatalogue;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @Mock
+    private PlanetRepository planetRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TaskScheduler taskScheduler;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    public void beforeEach() {
+        Planet endor = new Planet(5L, "Endór", "temperate", "forests");
+        endor.setVersion(2L);
+        endor.setLastModified(Instant.parse("2023-05-04T10:15:30.123456Z"));
+        when(planetRepository.streamAll()).thenReturn(Stream.of(TATOOINE, ALDERAAN, YAVINIV, endor));
+        meterRegistry = new SimpleMeterRegistry();
+        planetCatalogue = new PlanetCatalogue(planetRepository, entityManager, transactionManager, eventPublisher,
+                taskScheduler, meterRegistry, true, "");
+        planetCatalogue.start();
+    }
+
+    @Test
+    public void getPlanet_ReadsItBackFromTheSnapshot() {
+
+        Assertions.assertThat(planetCatalogue.get(3L)).hasValueSatisfying(planet -> {
+            Assertions.assertThat(planet.getName()).isEqualTo(YAVINIV.getName());
+            Assertions.assertThat(planet.getClimate()).isEqualTo(YAVINIV.getClimate());
+            Assertions.assertThat(planet.getTerrain()).isEqualTo(YAVINIV.getTerrain());
+            Assertions.assertThat(planet.getVersion()).isNull();
+        });
+        Assertions.assertThat(planetCatalogue.getByName("Endór")).hasValueSatisfying(planet -> {
+            Assertions.assertThat(planet.getId()).isEqualTo(5L);
+            Assertions.assertThat(planet.getVersion()).isEqualTo(2L);
+            Assertions.assertThat(planet.getLastModified()).isEqualTo(Instant.parse("2023-05-04T10:15:30.123456Z"));
+        });
+        Assertions.assertThat(planetCatalogue.get(4L)).isEmpty();
+        Assertions.assertThat(planetCatalogue.getByName("tatooine")).map(Planet::getId).contains(1L);
+        Assertions.assertThat(planetCatalogue.getByName("ENDOR")).map(Planet::getId).contains(5L);
+        Assertions.assertThat(planetCatalogue.getByName("Tatooine II")).isEmpty();
+        Assertions.assertThat(meterRegistry.get(PlanetCatalogue.PLANETS_GAUGE).gauge().value()).isEqualTo(4);
+    }
+
+    @Test
+    public void listPlanets_ReturnsThoseOfTheIdsInIdOrder() {
+
+        Assertions.assertThat(planetCatalogue.list(RoaringBitmap.bitmapOf(4, 3, 1))).extracting(Planet::getId)
+                .containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void getPlanet_AfterChanges_FollowsWrites() {
+
+        planetCatalogue.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(
+                new Planet(1L, "Tatooine II", "arid", "desert"), new Planet(6L, "Hoth", "frozen", "tundra"))));
+        planetCatalogue.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(ALDERAAN.getId())));
+
+        Assertions.assertThat(planetCatalogue.getByName("Tatooine")).isEmpty();
+        Assertions.assertThat(planetCatalogue.getByName("tatooine ii")).map(Planet::getId).contains(1L);
+        Assertions.assertThat(planetCatalogue.get(6L)).map(Planet::getName).contains("Hoth");
+        Assertions.assertThat(planetCatalogue.get(2L)).isEmpty();
+        Assertions.assertThat(planetCatalogue.getByName(ALDERAAN.getName())).isEmpty();
+    }
+
+    @Test
+    public void rebuild_ReplacesTheSnapshotAndTheChanges() {
+        planetCatalogue.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(6L, "Hoth", "frozen", "tundra"))));
+        when(planetRepository.streamAll()).thenReturn(Stream.of(ALDERAAN));
+
+        planetCatalogue.rebuild();
+
+        verify(eventPublisher).publishEvent(any(PlanetCatalogueRebuiltEvent.class));
+        Assertions.assertThat(planetCatalogue.get(6L)).isEmpty();
+        Assertions.assertThat(planetCatalogue.get(1L)).isEmpty();
+        Assertions.assertThat(planetCatalogue.getByName(ALDERAAN.getName())).map(Planet::getId).contains(2L);
+    }
+
+    @Test
+    public void start_WithSnapshotFile_MapsTheOneSavedByTheLastBuild() {
+        Path file = directory.resolve("catalogue.bin");
+        when(planetRepository.streamAll()).thenReturn(Stream.of(TATOOINE, ALDERAAN));
+        startWithFile(file);
+
+        PlanetCatalogue restarted = startWithFile(file);
+
+        verify(planetRepository, times(2)).streamAll(); // once in beforeEach
+        Assertions.assertThat(restarted.getByName(ALDERAAN.getName())).map(Planet::getId).contains(2L);
+        Assertions.assertThat(restarted.get(3L)).isEmpty();
+    }
+
+    @Test
+    public void start_WithUnreadableSnapshotFile_RebuildsItFromTheDatabase() throws Exception {
+        Path file = Files.write(directory.resolve("catalogue.bin"), new byte[]{1, 2, 3});
+        when(planetRepository.streamAll()).thenReturn(Stream.of(TATOOINE));
+
+        Assertions.assertThat(startWithFile(file).get(1L)).isPresent();
+        Assertions.assertThat(PlanetCatalogueSnapshot.map(file).size()).isEqualTo(1);
+    }
+
+    @Test
+    public void start_WithCorruptSnapshotFile_RebuildsItFromTheDatabase() throws Exception {
+        Path file = directory.resolve("catalogue.bin");
+        when(planetRepository.streamAll()).thenReturn(Stream.of(TATOOINE, ALDERAAN));
+        startWithFile(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+        Assertions.assertThatThrownBy(() -> PlanetCatalogueSnapshot.map(file)).isInstanceOf(IllegalArgumentException.class);
+        when(planetRepository.streamAll()).thenReturn(Stream.of(YAVINIV));
+
+        PlanetCatalogue restarted = startWithFile(file);
+
+        Assertions.assertThat(restarted.get(3L)).isPresent();
+        Assertions.assertThat(restarted.get(1L)).isEmpty();
+    }
+
+    @Test
+    public void catchUp_OnTheScheduler_PublishesThePlanetsWrittenAndRemovedSinceTheSnapshot() {
+        Path file = directory.resolve("catalogue.bin");
+        when(planetRepository.streamAll()).thenReturn(Stream.of(TATOOINE, ALDERAAN, YAVINIV));
+        startWithFile(file);
+        PlanetCatalogue restarted = startWithFile(file);
+        List<Planet> firstPage = LongStream.range(6, 6 + PlanetRepository.STREAM_FETCH_SIZE)
+                .mapToObj(id -> new Planet(id, "Planet " + id, "arid", "desert"))
+                .collect(Collectors.toList());
+        Planet hoth = new Planet(6L + PlanetRepository.STREAM_FETCH_SIZE, "Hoth", "frozen", "tundra");
+        when(planetRepository.findModifiedSinceAfter(any(), eq(0L), any())).thenReturn(firstPage);
+        when(planetRepository.findModifiedSinceAfter(any(), eq(5L + PlanetRepository.STREAM_FETCH_SIZE), any()))
+                .thenReturn(List.of(hoth));
+        when(planetRepository.streamIds()).thenReturn(Stream.of(1L, 3L, 6L));
+
+        restarted.catchUp();
+        ArgumentCaptor<Runnable> catchUp = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskScheduler).schedule(catchUp.capture(), any(Instant.class));
+        catchUp.getValue().run();
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventPublisher, times(3)).publishEvent(events.capture());
+        Assertions.assertThat(((PlanetsChangedEvent) events.getAllValues().get(0)).getSaved()).isEqualTo(firstPage);
+        Assertions.assertThat(((PlanetsChangedEvent) events.getAllValues().get(1)).getSaved())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(hoth);
+        Assertions.assertThat(((PlanetsChangedEvent) events.getAllValues().get(2)).getRemovedIds()).containsExactly(2L);
+        Assertions.assertThat(events.getAllValues()).noneMatch(event -> ((PlanetsChangedEvent) event).isLocal());
+    }
+
+    @Test
+    public void buildSnapshot_WithIdsOutOfOrder_ThrowsException() {
+
+        PlanetCatalogueSnapshot.Builder builder = new PlanetCatalogueSnapshot.Builder().add(ALDERAAN);
+
+        Assertions.assertThatThrownBy(() -> builder.add(TATOOINE)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void getPlanet_BeforeStart_ThrowsException() {
+
+        planetCatalogue.stop();
+
+        Assertions.assertThatThrownBy(() -> planetCatalogue.get(1L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private PlanetCatalogue startWithFile(Path file) {
+        PlanetCatalogue catalogue = new PlanetCatalogue(planetRepository, entityManager, transactionManager,
+                eventPublisher, taskScheduler, new SimpleMeterRegistry(), true, file.toString());
+        catalogue.start();
+        return catalogue;
+    }
+}
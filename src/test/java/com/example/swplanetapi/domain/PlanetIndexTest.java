@@ -0,0 +1,195 @@
+package com.example.swplanetapi.domain;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlanetIndexTest {
+
+    private PlanetIndex planetIndex;
+
+    @Mock
+    private PlanetRepository planetRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PlanetCatalogue planetCatalogue;
+
+    @BeforeEach
+    public void beforeEach() {
+        planetIndex = startIndex(PlanetIndex.QueryMode.MEMORY);
+    }
+
+    @Test
+    public void findPlanets_ByTerrainTag_ReturnsPlanetsWithTag() {
+
+        Assertions.assertThat(planetIndex.find("all:Mountains", null).toArray()).containsExactly(2);
+    }
+
+    @Test
+    public void findPlanets_ByAnyClimateTag_ReturnsUnion() {
+
+        Assertions.assertThat(planetIndex.find(null, "any:arid,tropical").toArray()).containsExactly(1, 3);
+    }
+
+    @Test
+    public void findPlanets_ByTerrainAndClimateTags_ReturnsIntersection() {
+
+        Assertions.assertThat(planetIndex.find("all:grasslands,mountains", "any:temperate").toArray()).containsExactly(2);
+        Assertions.assertThat(planetIndex.find("all:desert,mountains", null).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void findPlanets_ByExactValue_MatchesWholeAttributeIgnoringCase() {
+
+        Assertions.assertThat(planetIndex.find(null, "TEMPERATE").toArray()).containsExactly(2);
+        Assertions.assertThat(planetIndex.find("Jungle, Rainforests", "any:tropical").toArray()).containsExactly(3);
+        Assertions.assertThat(planetIndex.find("jungle", null).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void findPlanets_WithoutFilters_ReturnsAllPlanets() {
+
+        Assertions.assertThat(planetIndex.find(null, null).toArray()).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void findPlanets_AfterChanges_FollowsWrites() {
+
+        planetIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(4L, "Hoth", "frozen", "tundra, mountains"))));
+        planetIndex.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(ALDERAAN.getId())));
+
+        Assertions.assertThat(planetIndex.find("any:mountains", null).toArray()).containsExactly(4);
+        Assertions.assertThat(planetIndex.list(null, null)).extracting(Planet::getName).containsExactly("Tatooine", "Yavin IV", "Hoth");
+    }
+
+    @Test
+    public void findPlanets_AfterPlanetSavedWithAnotherTerrain_MatchesOnlyTheNewOne() {
+
+        planetIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(1L, "Tatooine", "arid", "mountains"))));
+
+        Assertions.assertThat(planetIndex.find("desert", null).isEmpty()).isTrue();
+        Assertions.assertThat(planetIndex.find("any:desert", "arid").isEmpty()).isTrue();
+        Assertions.assertThat(planetIndex.find("any:mountains", null).toArray()).containsExactly(1, 2);
+        Assertions.assertThat(planetIndex.list("mountains", null)).extracting(Planet::getTerrain).containsExactly("mountains");
+    }
+
+    @Test
+    public void findPlanets_InDatabaseModeAfterPlanetRemovedAndSavedAgain_MatchesOnlyItsNewTerrain() {
+        PlanetIndex databaseIndex = startIndex(PlanetIndex.QueryMode.DATABASE);
+
+        databaseIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(1L, "Tatooine", "arid", "mountains"))));
+        databaseIndex.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(ALDERAAN.getId())));
+        databaseIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(2L, "Alderaan", "temperate", "desert"))));
+
+        Assertions.assertThat(databaseIndex.find("any:mountains", null).toArray()).containsExactly(1);
+        Assertions.assertThat(databaseIndex.find("any:grasslands", null).isEmpty()).isTrue();
+        Assertions.assertThat(databaseIndex.find("desert", "temperate").toArray()).containsExactly(2);
+    }
+
+    @Test
+    public void rebuild_WithChangesWhileReading_KeepsThem() {
+        Planet hoth = new Planet(4L, "Hoth", "frozen", "tundra");
+        // the rows were read before the writes below committed
+        when(planetRepository.streamAll()).thenReturn(PLANETS.stream().peek(planet -> {
+            if (planet == YAVINIV) {
+                planetIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(hoth)));
+                planetIndex.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(TATOOINE.getId())));
+            }
+        }));
+
+        planetIndex.rebuild();
+
+        Assertions.assertThat(planetIndex.list(null, null))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(ALDERAAN, YAVINIV, hoth);
+    }
+
+    @Test
+    public void listPlanets_InMemoryMode_ReturnsPlanetsInIdOrder() {
+
+        Assertions.assertThat(planetIndex.list(null, "any:temperate"))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(ALDERAAN, YAVINIV);
+        Assertions.assertThat(planetIndex.list("desert", "arid"))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+    }
+
+    @Test
+    public void listPlanets_InDatabaseMode_ThrowsException() {
+
+        PlanetIndex databaseIndex = startIndex(PlanetIndex.QueryMode.DATABASE);
+
+        Assertions.assertThat(databaseIndex.isMemoryResident()).isFalse();
+        Assertions.assertThatThrownBy(() -> databaseIndex.list(null, null)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void findPlanets_WithEmptyTagQuery_ThrowsException() {
+        Assertions.assertThatThrownBy(() -> planetIndex.find("any: , ", null))
+                .isInstanceOf(InvalidPlanetQueryException.class);
+    }
+
+    @Test
+    public void findPlanets_BeforeStart_ThrowsException() {
+
+        planetIndex.stop();
+
+        Assertions.assertThatThrownBy(() -> planetIndex.find("any:desert", null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void start_WithCatalogue_BuildsFromItInsteadOfTheDatabase() {
+        when(planetCatalogue.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            PLANETS.forEach(invocation.getArgument(0));
+            return null;
+        }).when(planetCatalogue).forEach(any());
+        PlanetIndex index = new PlanetIndex(planetRepository, entityManager, transactionManager,
+                PlanetIndex.QueryMode.MEMORY, planetCatalogue);
+
+        index.start();
+
+        Assertions.assertThat(index.list("desert", null))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        verify(planetRepository, times(1)).streamAll(); // by the index of beforeEach
+    }
+
+    @Test
+    public void rebuild_WithCatalogue_FollowsTheCatalogueInsteadOfTheDatabase() {
+        when(planetCatalogue.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            List.of(TATOOINE, ALDERAAN).forEach(invocation.getArgument(0));
+            return null;
+        }).when(planetCatalogue).forEach(any());
+
+        planetIndex.rebuild();
+        Assertions.assertThat(planetIndex.find(null, null).toArray()).containsExactly(1, 2, 3);
+        planetIndex.onCatalogueRebuilt();
+
+        Assertions.assertThat(planetIndex.find(null, null).toArray()).containsExactly(1, 2);
+        verify(planetRepository, times(1)).streamAll(); // by beforeEach
+    }
+
+    private PlanetIndex startIndex(PlanetIndex.QueryMode queryMode) {
+        when(planetRepository.streamAll()).thenReturn(PLANETS.stream());
+        PlanetIndex index = new PlanetIndex(planetRepository, entityManager, transactionManager, queryMode, planetCatalogue);
+        index.start();
+        return index;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.swplanetapi.domain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import({PlanetIngestQueue.class, PlanetBatchService.class, SimpleMeterRegistry.class})
+@ImportAutoConfiguration(ValidationAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the writer thread commits on its own
+@Sql(scripts = "/remove_planets.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+public class PlanetIngestQueueTest {
+
+    @Autowired
+    private PlanetIngestQueue planetIngestQueue;
+
+    @Autowired
+    private PlanetRepository planetRepository;
+
+    @Test
+    public void submitPlanets_WritesThemBehind_AndReportsEachTicket() throws Exception {
+        planetRepository.save(new Planet(TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain()));
+
+        PlanetIngestTicket hoth = planetIngestQueue.submit(new Planet("Hoth", "frozen", "tundra")).orElseThrow();
+        PlanetIngestTicket tatooine = planetIngestQueue.submit(new Planet(TATOOINE.getName(), "arid", "desert")).orElseThrow();
+
+        Assertions.assertThat(awaitDone(hoth).getStatus()).isEqualTo(PlanetIngestTicket.Status.CREATED);
+        Assertions.assertThat(hoth.getPlanetId()).isEqualTo(planetRepository.findByName("Hoth").orElseThrow().getId());
+        Assertions.assertThat(awaitDone(tatooine).getStatus()).isEqualTo(PlanetIngestTicket.Status.REJECTED);
+        Assertions.assertThat(tatooine.getMessage()).isEqualTo("Planet already exists");
+        Assertions.assertThat(planetIngestQueue.status(hoth.getId())).containsSame(hoth);
+    }
+
+    @Test
+    public void ticketStatus_WithUnknownId_IsEmpty() {
+
+        Assertions.assertThat(planetIngestQueue.status("unknown")).isEmpty();
+    }
+
+    @DirtiesContext
+    @Test
+    public void submitPlanet_AfterStop_IsRefused() {
+
+        planetIngestQueue.stop();
+
+        Assertions.assertThat(planetIngestQueue.submit(new Planet("Hoth", "frozen", "tundra"))).isEmpty();
+    }
+
+    @Test
+    public void stop_WithWriterStuck_FailsTheQueuedPlanetsAfterTheTimeout() throws Exception {
+        PlanetBatchService stuckBatchService = mock(PlanetBatchService.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(stuckBatchService.createAll(any(), any())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new PlanetBatchResult();
+        });
+        PlanetIngestQueue queue = new PlanetIngestQueue(stuckBatchService, new SimpleMeterRegistry(), 10, 1,
+                Duration.ofMinutes(1), Duration.ofMillis(100));
+        queue.start();
+        queue.submit(new Planet("Hoth", "frozen", "tundra")).orElseThrow();
+        PlanetIngestTicket dagobah = queue.submit(new Planet("Dagobah", "murky", "swamp")).orElseThrow();
+        writing.await();
+
+        try {
+            queue.stop();
+
+            Assertions.assertThat(dagobah.getStatus()).isEqualTo(PlanetIngestTicket.Status.FAILED);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void submitPlanets_WithSecondChunkFailing_CreatesThePlanetsOfTheFirst() throws Exception {
+        PlanetBatchService failingBatchService = mock(PlanetBatchService.class);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(failingBatchService.createAll(any(), any())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new PlanetBatchResult();
+        }).thenAnswer(invocation -> {
+            Consumer<List<Planet>> storedListener = invocation.getArgument(1);
+            storedListener.accept(List.of(new Planet(7L, "Hoth", "frozen", "tundra")));
+            throw new DataAccessResourceFailureException("Connection lost");
+        });
+        PlanetIngestQueue queue = new PlanetIngestQueue(failingBatchService, new SimpleMeterRegistry(), 10, 10,
+                Duration.ofMinutes(1), Duration.ofSeconds(5));
+        queue.start();
+        queue.submit(new Planet("Bespin", "temperate", "gas giant")).orElseThrow();
+        writing.await(); // the next batch holds both planets below
+        PlanetIngestTicket hoth = queue.submit(new Planet("Hoth", "frozen", "tundra")).orElseThrow();
+        PlanetIngestTicket dagobah = queue.submit(new Planet("Dagobah", "murky", "swamp")).orElseThrow();
+        release.countDown();
+
+        try {
+            Assertions.assertThat(awaitDone(hoth).getStatus()).isEqualTo(PlanetIngestTicket.Status.CREATED);
+            Assertions.assertThat(hoth.getPlanetId()).isEqualTo(7L);
+            Assertions.assertThat(awaitDone(dagobah).getStatus()).isEqualTo(PlanetIngestTicket.Status.FAILED);
+        } finally {
+            queue.stop();
+        }
+    }
+
+    private static PlanetIngestTicket awaitDone(PlanetIngestTicket ticket) throws InterruptedException {
+        for (int i = 0; i < 100 && ticket.getStatus() == PlanetIngestTicket.Status.PENDING; i++) {
+            Thread.sleep(50);
+        }
+        return ticket;
+    }
+}
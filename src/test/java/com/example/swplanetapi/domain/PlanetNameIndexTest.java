@@ -0,0 +1,154 @@
+package com.example.swplanetapi.domain;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class PlanetNameIndexTest {
+
+    private PlanetNameIndex planetNameIndex;
+
+    @Mock
+    private PlanetRepository planetRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private PlanetCatalogue planetCatalogue;
+
+    @BeforeEach
+    public void beforeEach() {
+        when(planetRepository.streamAll()).thenReturn(PLANETS.stream());
+        planetNameIndex = new PlanetNameIndex(planetRepository, entityManager, transactionManager, planetCatalogue);
+        planetNameIndex.start();
+        planetNameIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(
+                new Planet(4L, "Tatooine II", "arid", "desert"), new Planet(5L, "Endór", "temperate", "forests"))));
+    }
+
+    @Test
+    public void searchPlanets_ByPrefix_ReturnsMatchesInNameOrderIgnoringCaseAndAccents() {
+
+        Assertions.assertThat(planetNameIndex.search("TAT", 10)).extracting(Planet::getName)
+                .containsExactly("Tatooine", "Tatooine II");
+        Assertions.assertThat(planetNameIndex.search("endo", 10)).extracting(Planet::getName).containsExactly("Endór");
+        Assertions.assertThat(planetNameIndex.search("tat", 1))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        Assertions.assertThat(planetNameIndex.search("hoth", 10)).isEmpty();
+    }
+
+    @Test
+    public void searchPlanets_Fuzzy_ReturnsClosestFirst() {
+
+        Assertions.assertThat(planetNameIndex.search("tst", 0, 10)).isEmpty();
+        Assertions.assertThat(planetNameIndex.search("tst", 1, 10)).extracting(Planet::getName)
+                .containsExactly("Tatooine", "Tatooine II");
+        Assertions.assertThat(planetNameIndex.search("yavn", 1, 10))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+        Assertions.assertThat(planetNameIndex.search("aldraan", 1, 10))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(ALDERAAN);
+    }
+
+    @Test
+    public void searchPlanets_Fuzzy_LimitsEachDistanceInNameOrder() {
+
+        Assertions.assertThat(planetNameIndex.search("tatu", 2, 10)).extracting(Planet::getName)
+                .containsExactly("Tatooine", "Tatooine II");
+        Assertions.assertThat(planetNameIndex.search("enda", 1, 1)).extracting(Planet::getName).containsExactly("Endór");
+        Assertions.assertThat(planetNameIndex.search("hoth", 2, 10)).isEmpty();
+    }
+
+    @Test
+    public void searchPlanets_FuzzyInLargeIndex_SkipsTheNamesOutOfReach() {
+
+        int[] visited = new int[1];
+        NavigableSet<String> byName = new TreeSet<>() {
+            @Override
+            public String higher(String key) {
+                visited[0]++;
+                return super.higher(key);
+            }
+        };
+        for (int i = 0; i < 100_000; i++) {
+            byName.add("x" + i + "\u0000" + i);
+        }
+        byName.add("tatooine\u0000100000");
+
+        Assertions.assertThat(PlanetNameIndex.closestKeys(byName, "tat", 1, 10)).containsExactly("tatooine\u0000100000");
+        Assertions.assertThat(visited[0]).isLessThan(100);
+    }
+
+    @Test
+    public void searchPlanets_AfterChanges_FollowsWrites() {
+
+        planetNameIndex.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(TATOOINE.getId())));
+        planetNameIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(new Planet(4L, "Hoth", "frozen", "tundra"))));
+
+        Assertions.assertThat(planetNameIndex.search("tat", 10)).isEmpty();
+        Assertions.assertThat(planetNameIndex.search("h", 10)).extracting(Planet::getId).containsExactly(4L);
+    }
+
+    @Test
+    public void rebuild_WithChangesWhileReading_KeepsThem() {
+        Planet hoth = new Planet(4L, "Hoth", "frozen", "tundra");
+        // the rows were read before the writes below committed
+        when(planetRepository.streamAll()).thenReturn(PLANETS.stream().peek(planet -> {
+            if (planet == YAVINIV) {
+                planetNameIndex.onPlanetsChanged(PlanetsChangedEvent.saved(List.of(hoth)));
+                planetNameIndex.onPlanetsChanged(PlanetsChangedEvent.removed(List.of(TATOOINE.getId())));
+            }
+        }));
+
+        planetNameIndex.rebuild();
+
+        Assertions.assertThat(planetNameIndex.search("tat", 10)).isEmpty();
+        Assertions.assertThat(planetNameIndex.search("h", 10))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(hoth);
+        Assertions.assertThat(planetNameIndex.search("yav", 10))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+    }
+
+    @Test
+    public void searchPlanets_WithCatalogue_ReadsThePlanetsFromIt() {
+        Planet tatooine = new Planet(TATOOINE.getId(), TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain());
+        when(planetCatalogue.isEnabled()).thenReturn(true);
+        doAnswer(invocation -> {
+            PLANETS.forEach(invocation.<Consumer<Planet>>getArgument(0));
+            return null;
+        }).when(planetCatalogue).forEach(any());
+        when(planetCatalogue.get(TATOOINE.getId())).thenReturn(Optional.of(tatooine));
+        PlanetNameIndex catalogueIndex = new PlanetNameIndex(planetRepository, entityManager, transactionManager, planetCatalogue);
+        catalogueIndex.start();
+
+        Assertions.assertThat(catalogueIndex.search("tat", 10)).singleElement().isSameAs(tatooine);
+        Assertions.assertThat(catalogueIndex.search("tst", 1, 10)).singleElement().isSameAs(tatooine);
+        verify(planetCatalogue, never()).get(ALDERAAN.getId());
+    }
+
+    @Test
+    public void searchPlanets_BeforeStart_ThrowsException() {
+
+        planetNameIndex.stop();
+
+        Assertions.assertThatThrownBy(() -> planetNameIndex.search("tat", 10))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
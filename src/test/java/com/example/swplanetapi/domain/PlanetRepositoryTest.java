@@ -2,18 +2,34 @@ package com.example.swplanetapi.domain;
 
 import static com.example.swplanetapi.common.PlanetConstants.*;
 
+import com.example.swplanetapi.config.SecondLevelCacheConfig;
 import org.assertj.core.api.Assertions;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @DataJpaTest
 public class PlanetRepositoryTest {
@@ -27,6 +43,7 @@ public class PlanetRepositoryTest {
     @AfterEach
     public void afterEach() {
         PLANET.setId(null);  //depois de cada teste zero o id
+        PLANET.setVersion(null);
         // e necessario pq usamos a conatnte PLANET em todos os testes sendo assim ele sempre tem id no banco
         // e quando usar mais de um persistAndFlush o segunda não vai cosneguir salvar
         //pq o primeiro persistaAndFlush já o salvou e já recebeu id
@@ -43,6 +60,40 @@ public class PlanetRepositoryTest {
         Assertions.assertThat(sut.getTerrain()).isEqualTo(PLANET.getTerrain());
     }
 
+    @Test
+    public void createPlanet_StampsVersionAndLastModified() {
+        Planet planet = planetRepository.save(PLANET);
+        Planet sut = testEntityManager.find(Planet.class, planet.getId());
+
+        Assertions.assertThat(sut.getVersion()).isZero();
+        Assertions.assertThat(sut.getLastModified()).isNotNull();
+    }
+
+    @Test
+    public void createPlanet_WithPlainSql_GetsDefaultVersionAndLastModified() {
+        testEntityManager.getEntityManager()
+                .createNativeQuery("INSERT INTO planets (name, climate, terrain) VALUES ('Hoth', 'frozen', 'tundra')")
+                .executeUpdate();
+
+        Planet sut = planetRepository.findByName("Hoth").get();
+
+        Assertions.assertThat(sut.getVersion()).isZero();
+        Assertions.assertThat(sut.getLastModified()).isNotNull();
+    }
+
+    @Test
+    public void planetProxy_EqualsLoadedPlanet() {
+        Long id = testEntityManager.persistFlushFind(PLANET).getId();
+        testEntityManager.clear();
+
+        Planet proxy = testEntityManager.getEntityManager().getReference(Planet.class, id);
+
+        Assertions.assertThat(proxy.getClass()).isNotEqualTo(Planet.class);
+        Assertions.assertThat(proxy).isEqualTo(PLANET);
+        Assertions.assertThat(PLANET).isEqualTo(proxy);
+        Assertions.assertThat(proxy.hashCode()).isEqualTo(PLANET.hashCode());
+    }
+
     @Test
     public void createPlanet_WithInValidData_ThrowsException() {
         Planet emptyPlanet = new Planet();
@@ -124,8 +175,64 @@ public class PlanetRepositoryTest {
         Assertions.assertThat(responseWithoutFilters).hasSize(3);
         Assertions.assertThat(responseWithFilters).isNotEmpty();
         Assertions.assertThat(responseWithFilters).hasSize(1);
-        Assertions.assertThat(responseWithoutFilters.get(0)).isEqualTo(TATOOINE);
+        Assertions.assertThat(responseWithoutFilters.get(0))
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void listPlanets_ModifiedSinceAfterId_ReturnsNextPage() {
+        Instant since = Instant.now().minus(Duration.ofMinutes(1));
+
+        List<Planet> firstPage = planetRepository.findModifiedSinceAfter(since, 0L, PageRequest.of(0, 2));
+        List<Planet> secondPage = planetRepository.findModifiedSinceAfter(since, 2L, PageRequest.of(0, 2));
+
+        Assertions.assertThat(firstPage).extracting(Planet::getId).containsExactly(1L, 2L);
+        Assertions.assertThat(secondPage).extracting(Planet::getId).containsExactly(3L);
+        Assertions.assertThat(planetRepository.findModifiedSinceAfter(Instant.now().plus(Duration.ofMinutes(1)), 0L,
+                PageRequest.of(0, 2))).isEmpty();
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void listPlanets_AfterCursor_ReturnsNextPage() {
+
+        List<Planet> firstPage = planetRepository.findPageAfter(0L, null, null, PageRequest.of(0, 2));
+        List<Planet> secondPage = planetRepository.findPageAfter(firstPage.get(1).getId(), null, null, PageRequest.of(0, 2));
+        List<Planet> filteredPage = planetRepository.findPageAfter(0L, QueryBuilder.normalize("DESERT"), null, PageRequest.of(0, 2));
+
+        Assertions.assertThat(firstPage)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE, ALDERAAN);
+        Assertions.assertThat(secondPage)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+        Assertions.assertThat(filteredPage)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void streamPlanets_ReturnsAllPlanetsInIdOrder() {
+
+        List<Planet> sut;
+        try (Stream<Planet> planets = planetRepository.streamAll()) {
+            sut = planets.collect(Collectors.toList());
+        }
+
+        Assertions.assertThat(sut)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE, ALDERAAN, YAVINIV);
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void listPlanets_WithFiltersInAnyCase_ReturnsFilteredPlanets() {
+
+        Example<Planet> query = QueryBuilder.makeQuery(new Planet("TEMPERATE", "Grasslands, Mountains"));
+
+        List<Planet> response = planetRepository.findAll(query);
 
+        Assertions.assertThat(response)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(ALDERAAN);
     }
 
     @Test
@@ -149,11 +256,106 @@ public class PlanetRepositoryTest {
 
     }
 
+    @Test
+    public void deleteRowById_ReturnsDeletedRows() {
+
+        Planet planet = testEntityManager.persistFlushFind(PLANET);
+
+        Assertions.assertThat(planetRepository.deleteRowById(planet.getId())).isEqualTo(1);
+        Assertions.assertThat(planetRepository.deleteRowById(planet.getId())).isZero();
+        testEntityManager.clear();
+        Assertions.assertThat(testEntityManager.find(Planet.class, planet.getId())).isNull();
+    }
+
+    @Sql(scripts = "/import_planets.sql")
+    @Test
+    public void deleteRowsByIds_DeletesThosePlanets() {
+
+        Assertions.assertThat(planetRepository.findIdsByFilter(null, "temperate")).containsExactly(2L);
+        Assertions.assertThat(planetRepository.deleteRowsByIds(List.of(2L, 99L))).isEqualTo(1);
+        Assertions.assertThat(planetRepository.findIdsByFilter(null, null)).containsExactlyInAnyOrder(1L, 3L);
+    }
+
     @Test
     public void removePlanet_WithUneExistingId_ThrowsException() {
         Assertions.assertThatThrownBy(() -> planetRepository.deleteById(1L)).isInstanceOf(EmptyResultDataAccessException.class);
 
     }
 
+    @Nested
+    @DataJpaTest
+    @Import(SecondLevelCacheConfig.class)
+    @TestPropertySource(properties = "planets.jpa.second-level-cache.enabled=true")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // every call commits and leaves its own session
+    @Sql(scripts = "/remove_planets.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public class SecondLevelCache {
+
+        // its own, not the enclosing test's, which belongs to the context without the cache
+        @Autowired
+        private PlanetRepository planetRepository;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        @Autowired
+        private ApplicationEventPublisher eventPublisher;
+
+        private Statistics statistics;
+
+        @BeforeEach
+        public void beforeEach() {
+            SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+            sessionFactory.getCache().evictAllRegions();
+            statistics = sessionFactory.getStatistics();
+        }
+
+        @Test
+        public void getPlanet_Twice_ReadsTheDatabaseOnce() {
+            Planet planet = planetRepository.save(new Planet(TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain()));
+            sessionFactoryCache().evictEntityData(Planet.class, planet.getId());
+            statistics.clear();
+
+            Assertions.assertThat(planetRepository.findById(planet.getId())).contains(planet);
+            Assertions.assertThat(planetRepository.findById(planet.getId())).contains(planet);
+
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+            Assertions.assertThat(statistics.getDomainDataRegionStatistics(Planet.CACHE_REGION).getHitCount()).isEqualTo(1);
+        }
+
+        @Test
+        public void getPlanetByName_AndListPlanets_Twice_ReadTheDatabaseOnceEach() {
+            planetRepository.save(new Planet(TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain()));
+            planetRepository.save(new Planet(ALDERAAN.getName(), ALDERAAN.getClimate(), ALDERAAN.getTerrain()));
+            Example<Planet> query = QueryBuilder.makeQuery(new Planet(null, ALDERAAN.getTerrain()));
+            statistics.clear();
+
+            for (int i = 0; i < 2; i++) {
+                Assertions.assertThat(planetRepository.findByName(TATOOINE.getName())).isPresent();
+                Assertions.assertThat(planetRepository.findAll(query)).extracting(Planet::getName)
+                        .containsExactly(ALDERAAN.getName());
+            }
+
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+            Assertions.assertThat(statistics.getQueryCacheHitCount()).isEqualTo(2);
+        }
+
+        @Test
+        public void getPlanetByName_AfterPlanetsChanged_ReadsTheDatabaseAgain() {
+            Planet planet = planetRepository.save(new Planet(TATOOINE.getName(), TATOOINE.getClimate(), TATOOINE.getTerrain()));
+            planetRepository.findByName(TATOOINE.getName());
+            statistics.clear();
+
+            eventPublisher.publishEvent(PlanetsChangedEvent.saved(List.of(planet)));
+            planetRepository.findByName(TATOOINE.getName());
+            planetRepository.findById(planet.getId());
+
+            Assertions.assertThat(statistics.getQueryCacheHitCount()).isZero();
+            Assertions.assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        }
+
+        private org.hibernate.Cache sessionFactoryCache() {
+            return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        }
+    }
 
 }
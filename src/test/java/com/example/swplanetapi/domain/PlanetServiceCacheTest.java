@@ -0,0 +1,167 @@
+package com.example.swplanetapi.domain;
+
+import com.example.swplanetapi.config.CacheConfig;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Example;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {PlanetService.class, PlanetListKeyGenerator.class, CacheConfig.class})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+public class PlanetServiceCacheTest {
+
+    @Autowired
+    private PlanetService planetService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private PlanetRepository planetRepository;
+
+    @MockBean
+    private EntityManager entityManager;
+
+    @MockBean
+    private PlanetIndex planetIndex;
+
+    @MockBean
+    private PlanetNameIndex planetNameIndex;
+
+    @MockBean
+    private PlanetCatalogue planetCatalogue;
+
+    @BeforeEach
+    public void beforeEach() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    public void getPlanet_Twice_QueriesRepositoryOnce() {
+
+        when(planetRepository.findById(1L)).thenReturn(Optional.of(TATOOINE));
+
+        Assertions.assertThat(planetService.get(1L).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+        Assertions.assertThat(planetService.get(1L).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+
+        verify(planetRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void getPlanet_ByUnexistingId_CachesMiss() {
+
+        when(planetRepository.findById(99L)).thenReturn(Optional.empty());
+
+        Assertions.assertThat(planetService.get(99L)).isEmpty();
+        Assertions.assertThat(planetService.get(99L)).isEmpty();
+
+        verify(planetRepository, times(1)).findById(99L);
+    }
+
+    @Test
+    public void getPlanetByName_Twice_QueriesRepositoryOnce() {
+
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.of(TATOOINE));
+
+        Assertions.assertThat(planetService.getByName(TATOOINE.getName()).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+        Assertions.assertThat(planetService.getByName(TATOOINE.getName()).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+
+        verify(planetRepository, times(1)).findByName(TATOOINE.getName());
+    }
+
+    @Test
+    public void createPlanet_ReplacesCachedMisses() {
+
+        Planet hoth = new Planet(4L, "Hoth", "frozen", "tundra");
+        when(planetRepository.findById(4L)).thenReturn(Optional.empty());
+        // a case-insensitive collation, as on MySQL
+        when(planetRepository.findByName("hoth")).thenReturn(Optional.empty()).thenReturn(Optional.of(hoth));
+        when(planetRepository.save(any())).thenReturn(hoth);
+
+        Assertions.assertThat(planetService.get(4L)).isEmpty();
+        Assertions.assertThat(planetService.getByName("hoth")).isEmpty();
+        planetService.create(new Planet("Hoth", "frozen", "tundra"));
+
+        Assertions.assertThat(planetService.get(4L).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(hoth);
+        Assertions.assertThat(planetService.getByName("hoth").orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(hoth);
+        verify(planetRepository, times(1)).findById(4L);
+        verify(planetRepository, times(2)).findByName("hoth");
+    }
+
+    @Test
+    public void removePlanet_EvictsCachedPlanet() {
+
+        when(planetRepository.findById(1L)).thenReturn(Optional.of(TATOOINE)).thenReturn(Optional.empty());
+        when(planetRepository.findByName(TATOOINE.getName())).thenReturn(Optional.of(TATOOINE)).thenReturn(Optional.empty());
+
+        planetService.get(1L);
+        planetService.getByName(TATOOINE.getName());
+        planetService.remove(1L);
+
+        Assertions.assertThat(planetService.get(1L)).isEmpty();
+        Assertions.assertThat(planetService.getByName(TATOOINE.getName())).isEmpty();
+    }
+
+    @Test
+    public void listPlanets_WithSameFiltersInAnyCase_QueriesRepositoryOnce() {
+
+        when(planetRepository.findAll(anyExample())).thenReturn(List.of(TATOOINE));
+
+        Assertions.assertThat(planetService.list("desert", "arid"))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        Assertions.assertThat(planetService.list("DESERT", "Arid"))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+
+        verify(planetRepository, times(1)).findAll(anyExample());
+    }
+
+    @Test
+    public void listPlanets_WithoutFilters_IsNotCached() {
+
+        when(planetRepository.findAll(anyExample())).thenReturn(PLANETS);
+
+        planetService.list(null, null);
+        planetService.list(null, null);
+
+        verify(planetRepository, times(2)).findAll(anyExample());
+    }
+
+    @Test
+    public void listPlanets_AfterWrite_QueriesRepositoryAgain() {
+
+        when(planetRepository.findAll(anyExample())).thenReturn(List.of(TATOOINE));
+        when(planetRepository.save(any())).thenReturn(new Planet(4L, "Jakku", "arid", "desert"));
+        when(planetRepository.deleteRowById(4L)).thenReturn(1);
+
+        planetService.list("desert", null);
+        planetService.create(new Planet("Jakku", "arid", "desert"));
+        planetService.list("desert", null);
+        planetService.remove(4L);
+        planetService.list("desert", null);
+
+        verify(planetRepository, times(3)).findAll(anyExample());
+    }
+
+    private static Example<Planet> anyExample() {
+        return any();
+    }
+}
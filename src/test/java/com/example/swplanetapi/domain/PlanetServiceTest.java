@@ -3,13 +3,23 @@ package com.example.swplanetapi.domain;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Example;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static com.example.swplanetapi.common.PlanetConstants.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,13 +37,29 @@ public class PlanetServiceTest {
     @Mock
     private PlanetRepository planetRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PlanetIndex planetIndex;
+
+    @Mock
+    private PlanetNameIndex planetNameIndex;
+
+    @Mock
+    private PlanetCatalogue planetCatalogue;
+
     @Test
     public void createPlanet_WithValidData_ReturnsPlanet() {
 
         when(planetRepository.save(PLANET)).thenReturn(PLANET);
 
         Planet sut = planetService.create(PLANET);
-        Assertions.assertThat(sut).isEqualTo(PLANET);
+        Assertions.assertThat(sut).usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(PLANET);
+        verify(eventPublisher).publishEvent(any(PlanetsChangedEvent.class));
 
     }
 
@@ -51,7 +77,8 @@ public class PlanetServiceTest {
         Optional<Planet> planet = planetService.get(1L);
 
         Assertions.assertThat(planet).isNotEmpty();
-        Assertions.assertThat(planet.get()).isEqualTo(PLANET);
+        Assertions.assertThat(planet.get())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(PLANET);
 
     }
     @Test
@@ -70,7 +97,8 @@ public class PlanetServiceTest {
         Optional<Planet> planet = planetService.getByName("tatooine");
 
         Assertions.assertThat(planet).isNotEmpty();
-        Assertions.assertThat(planet.get()).isEqualTo(PLANET);
+        Assertions.assertThat(planet.get())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(PLANET);
     }
     @Test
     public void getPlanet_ByUnexistingName_ReturnsPlanet() {
@@ -91,7 +119,8 @@ public class PlanetServiceTest {
 
         Assertions.assertThat(list).isNotEmpty();
         Assertions.assertThat(list).hasSize(1);
-        Assertions.assertThat(list.get(0)).isEqualTo(PLANET);
+        Assertions.assertThat(list.get(0))
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(PLANET);
 
     }
     @Test
@@ -105,20 +134,220 @@ public class PlanetServiceTest {
 
     }
     @Test
-    public void removePlanet_WithExistingId_doesNotThrowAnyException() {
+    public void listPlanets_ByTags_LoadsIndexedPlanets() {
+
+        when(planetIndex.find("any:desert,mountains", null)).thenReturn(RoaringBitmap.bitmapOf(1, 2));
+        when(planetRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(ALDERAAN, TATOOINE));
+
+        List<Planet> list = planetService.list("any:desert,mountains", null);
+
+        Assertions.assertThat(list)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE, ALDERAAN);
+        verify(planetRepository, never()).findAll(ArgumentMatchers.<Example<Planet>>any());
+    }
+
+    @Test
+    public void listPlanets_ByTagsWithPageAndSize_PagesTheIndexedIds() {
+
+        when(planetIndex.find("any:desert,mountains", null)).thenReturn(RoaringBitmap.bitmapOf(1, 2, 3));
+        when(planetRepository.findAllById(List.of(3L))).thenReturn(List.of(YAVINIV));
+
+        Page<Planet> last = planetService.list("any:desert,mountains", null, 1, 2);
+        Page<Planet> beyond = planetService.list("any:desert,mountains", null, 2, 2);
+
+        Assertions.assertThat(last.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+        Assertions.assertThat(last.getTotalElements()).isEqualTo(3);
+        Assertions.assertThat(beyond.getContent()).isEmpty();
+        Assertions.assertThat(beyond.getTotalElements()).isEqualTo(3);
+        verifyNoMoreInteractions(planetRepository);
+    }
+
+    @Test
+    public void listPlanetPage_ByTags_PagesTheIndexedIdsAfterTheCursor() {
+
+        when(planetIndex.find("any:desert,mountains", null)).thenReturn(RoaringBitmap.bitmapOf(1, 2, 3));
+        when(planetRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(TATOOINE, ALDERAAN));
+        when(planetRepository.findAllById(List.of(3L))).thenReturn(List.of(YAVINIV));
+
+        PlanetPage first = planetService.listPage("any:desert,mountains", null, null, 1);
+        PlanetPage last = planetService.listPage("any:desert,mountains", null, PageCursor.encode(2L), 1);
+
+        Assertions.assertThat(first.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        Assertions.assertThat(first.getNext()).isEqualTo(PageCursor.encode(1L));
+        Assertions.assertThat(last.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+        Assertions.assertThat(last.getNext()).isNull();
+        verifyNoMoreInteractions(planetRepository);
+    }
+
+    @Test
+    public void listPlanets_InMemoryMode_DoesNotQueryRepository() {
+
+        when(planetIndex.isMemoryResident()).thenReturn(true);
+        when(planetIndex.list(TATOOINE.getTerrain(), TATOOINE.getClimate())).thenReturn(List.of(TATOOINE));
+
+        List<Planet> list = planetService.list(TATOOINE.getTerrain(), TATOOINE.getClimate());
+
+        Assertions.assertThat(list)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        verifyNoInteractions(planetRepository);
+    }
+
+    @Test
+    public void listPlanetsPage_WithMoreRows_ReturnsNextCursor() {
+
+        when(planetRepository.findPageAfter(0L, null, null, PageRequest.of(0, 3))).thenReturn(PLANETS);
+        PlanetPage page = planetService.listPage(null, null, null, 2);
+
+        Assertions.assertThat(page.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE, ALDERAAN);
+        Assertions.assertThat(page.getNext()).isEqualTo(PageCursor.encode(ALDERAAN.getId()));
+    }
+
+    @Test
+    public void listPlanetsPage_OnLastPage_ReturnsNoCursor() {
+
+        when(planetRepository.findPageAfter(eq(ALDERAAN.getId()), isNull(), isNull(), any(Pageable.class))).thenReturn(List.of(YAVINIV));
+        PlanetPage page = planetService.listPage(null, null, PageCursor.encode(ALDERAAN.getId()), 2);
+
+        Assertions.assertThat(page.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(YAVINIV);
+        Assertions.assertThat(page.getNext()).isNull();
+    }
+
+    @Test
+    public void listPlanetsPage_WithInvalidCursor_ThrowsException() {
+        Assertions.assertThatThrownBy(() -> planetService.listPage(null, null, "not-a-cursor", 2))
+                .isInstanceOf(InvalidPlanetQueryException.class);
+    }
+
+    @Test
+    public void listPlanetsPage_WithOversizedLimit_ClampsPageSize() {
+
+        when(planetRepository.findPageAfter(anyLong(), any(), any(), any(Pageable.class))).thenReturn(Collections.emptyList());
+        planetService.listPage(null, null, null, 1_000_000);
+
+        verify(planetRepository).findPageAfter(0L, null, null, PageRequest.of(0, PlanetService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    public void listPlanets_ByPage_ReturnsPage() {
+
+        Page<Planet> page = new PageImpl<>(List.of(TATOOINE), PageRequest.of(0, 1), 3);
+        when(planetRepository.findAll(ArgumentMatchers.<Example<Planet>>any(), any(Pageable.class))).thenReturn(page);
+        Page<Planet> sut = planetService.list(null, null, 0, 1);
+
+        Assertions.assertThat(sut.getContent())
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        Assertions.assertThat(sut.getTotalElements()).isEqualTo(3);
+    }
+
+    @Test
+    public void exportPlanets_HandsEveryPlanetToSink() {
+
+        when(planetRepository.streamAll()).thenReturn(PLANETS.stream());
+        List<Planet> exported = new ArrayList<>();
+        long count = planetService.export(exported::add);
+
+        Assertions.assertThat(count).isEqualTo(3);
+        Assertions.assertThat(exported)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactlyElementsOf(PLANETS);
+    }
 
-//        doNothing().when(planetRepository).deleteById(1L);
-//        planetService.remove(1L);
-//
-//        verify(planetRepository, times(1)).deleteById(1L);
-        Assertions.assertThatCode(() -> planetService.remove(1L)).doesNotThrowAnyException();
+    @Test
+    public void exportPlanets_ClearsPersistenceContextPeriodically() {
+
+        Stream<Planet> planets = Stream.generate(() -> PLANET).limit(PlanetRepository.STREAM_FETCH_SIZE * 2L + 1);
+        when(planetRepository.streamAll()).thenReturn(planets);
+        planetService.export(planet -> { });
+
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    public void searchPlanets_ClampsTheLimit() {
+        when(planetNameIndex.search("tat", 0, PlanetService.DEFAULT_SEARCH_LIMIT)).thenReturn(List.of(TATOOINE));
+
+        Assertions.assertThat(planetService.search("tat", null, null))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        planetService.search("tat", 1, 100_000);
+
+        verify(planetNameIndex).search("tat", 1, PlanetService.MAX_SEARCH_LIMIT);
+    }
+
+    @Test
+    public void searchPlanets_WithTooLongPrefix_ThrowsException() {
 
+        Assertions.assertThatThrownBy(() -> planetService.search("a".repeat(PlanetService.MAX_SEARCH_PREFIX + 1), 2, null))
+                .isInstanceOf(InvalidPlanetQueryException.class);
+        verifyNoInteractions(planetNameIndex);
     }
 
     @Test
-    public void removePlanet_WithExistingId_ThrowAnyException() {
-        doThrow(new RuntimeException()).when(planetRepository).deleteById(99L);
-        Assertions.assertThatThrownBy(() -> planetService.remove(99L)).isInstanceOf(RuntimeException.class);
+    public void getPlanets_WithCatalogue_ReadsItInsteadOfTheDatabase() {
+        RoaringBitmap ids = RoaringBitmap.bitmapOf(1);
+        when(planetCatalogue.isEnabled()).thenReturn(true);
+        when(planetCatalogue.get(1L)).thenReturn(Optional.of(TATOOINE));
+        when(planetCatalogue.getByName("Tatooine")).thenReturn(Optional.of(TATOOINE));
+        when(planetIndex.find("desert", null)).thenReturn(ids);
+        when(planetCatalogue.list(ids)).thenReturn(List.of(TATOOINE));
+
+        Assertions.assertThat(planetService.get(1L).orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+        Assertions.assertThat(planetService.getByName("Tatooine").orElseThrow())
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+        Assertions.assertThat(planetService.list("desert", null))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE);
+        verifyNoInteractions(planetRepository);
+    }
+
+    @Test
+    public void removePlanet_WithExistingId_ReturnsTrue() {
+        when(planetRepository.deleteRowById(1L)).thenReturn(1);
+
+        Assertions.assertThat(planetService.remove(1L)).isTrue();
+
+        verify(eventPublisher).publishEvent(any(PlanetsChangedEvent.class));
+    }
+
+    @Test
+    public void removePlanet_WithUnexistingId_ReturnsFalse() {
+
+        Assertions.assertThat(planetService.remove(99L)).isFalse();
+
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void removePlanets_ByFilter_DeletesTheIdsRead() {
+        when(planetRepository.findIdsByFilter("desert", null)).thenReturn(List.of(1L, 4L));
+        when(planetRepository.deleteRowsByIds(List.of(1L, 4L))).thenReturn(2);
+
+        Assertions.assertThat(planetService.removeAll("Desert", null)).isEqualTo(2);
+
+        verify(eventPublisher).publishEvent(ArgumentMatchers.<PlanetsChangedEvent>argThat(
+                event -> event.getRemovedIds().equals(List.of(1L, 4L))));
+    }
+
+    @Test
+    public void removePlanets_ByFilter_DeletesABoundedListAtATime() {
+        List<Long> ids = LongStream.rangeClosed(1, PlanetService.MAX_PAGE_SIZE + 1).boxed().toList();
+        when(planetRepository.findIdsByFilter("desert", null)).thenReturn(ids);
+        when(planetRepository.deleteRowsByIds(ids.subList(0, PlanetService.MAX_PAGE_SIZE)))
+                .thenReturn(PlanetService.MAX_PAGE_SIZE);
+        when(planetRepository.deleteRowsByIds(List.of((long) PlanetService.MAX_PAGE_SIZE + 1))).thenReturn(1);
+
+        Assertions.assertThat(planetService.removeAll("desert", null)).isEqualTo(PlanetService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void removePlanets_WithoutFiltersOrWithTags_ThrowsException() {
+
+        Assertions.assertThatThrownBy(() -> planetService.removeAll(null, null)).isInstanceOf(InvalidPlanetQueryException.class);
+        Assertions.assertThatThrownBy(() -> planetService.removeAll("any:desert", null)).isInstanceOf(InvalidPlanetQueryException.class);
+        verifyNoInteractions(planetRepository);
     }
 
 
@@ -0,0 +1,54 @@
+package com.example.swplanetapi.domain;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+
+public class PlanetTest {
+
+    @Test
+    public void equals_WithSameName_IsTrueWhateverTheOtherFields() {
+        Planet stored = new Planet(1L, "Tatooine", "arid", "desert");
+        Planet submitted = new Planet("Tatooine", "Arid", "Desert");
+
+        Assertions.assertThat(submitted).isEqualTo(stored);
+        Assertions.assertThat(stored).isEqualTo(submitted);
+        Assertions.assertThat(submitted.hashCode()).isEqualTo(stored.hashCode());
+        Assertions.assertThat(new Planet(1L, "Hoth", "arid", "desert")).isNotEqualTo(stored);
+    }
+
+    @Test
+    public void hashCode_IsStableWhenTheIdIsAssigned() {
+        Planet planet = new Planet("Tatooine", "arid", "desert");
+        Set<Planet> planets = new HashSet<>(List.of(planet));
+
+        planet.setId(1L);
+        planet.setVersion(0L);
+
+        Assertions.assertThat(planets).contains(planet).contains(TATOOINE);
+    }
+
+    @Test
+    public void equals_WithoutNames_ComparesTheOtherFields() {
+
+        Assertions.assertThat(new Planet("arid", "desert")).isEqualTo(new Planet("arid", "desert"));
+        Assertions.assertThat(new Planet("arid", "desert")).isNotEqualTo(new Planet("arid", "tundra"));
+        Assertions.assertThat(new Planet("arid", "desert")).isNotEqualTo(new Planet("Tatooine", "arid", "desert"));
+        Assertions.assertThat(new Planet()).isNotEqualTo(null).isNotEqualTo("Tatooine");
+    }
+
+    @Test
+    public void equals_OfQueryProbes_ComparesTheFilters() {
+
+        Assertions.assertThat(QueryBuilder.makeQuery(new Planet("Arid", "desert")))
+                .isEqualTo(QueryBuilder.makeQuery(new Planet("arid", "DESERT")));
+        Assertions.assertThat(QueryBuilder.makeQuery(new Planet("arid", "desert")))
+                .isNotEqualTo(QueryBuilder.makeQuery(new Planet("desert", "arid")))
+                .isNotEqualTo(QueryBuilder.makeQuery(new Planet("arid", null)));
+    }
+}
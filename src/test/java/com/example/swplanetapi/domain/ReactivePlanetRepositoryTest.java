@@ -0,0 +1,105 @@
+package com.example.swplanetapi.domain;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+@DataR2dbcTest(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive-planets;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password="})
+@Import(ReactivePlanetRepository.class)
+@ActiveProfiles("reactive")
+public class ReactivePlanetRepositoryTest {
+
+    @Autowired
+    private ReactivePlanetRepository planetRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    // same table as the JPA mapping, which owns the schema outside of this slice
+    @BeforeEach
+    public void beforeEach() {
+        databaseClient.sql("DROP TABLE IF EXISTS planets").then()
+                .then(databaseClient.sql("CREATE TABLE planets (id bigint auto_increment primary key, "
+                        + "name varchar(255) not null unique, climate varchar(255) not null, terrain varchar(255) not null, "
+                        + "climate_lower varchar(255) generated always as (lower(climate)), "
+                        + "terrain_lower varchar(255) generated always as (lower(terrain)), "
+                        + "version bigint default 0 not null, last_modified timestamp(6) default current_timestamp(6))").then())
+                .block();
+    }
+
+    @Test
+    public void createPlanet_WithValidData_ReturnsPlanetWithId() {
+
+        StepVerifier.create(planetRepository.save(PLANET).flatMap(planet -> planetRepository.findById(planet.getId())))
+                .expectNextMatches(planet -> planet.getId() != null && planet.getName().equals(PLANET.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    public void createPlanet_WithExistingName_ThrowsException() {
+
+        StepVerifier.create(planetRepository.save(PLANET).then(planetRepository.save(PLANET)))
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+    }
+
+    @Test
+    public void getPlanet_ByUnexistingName_ReturnsEmpty() {
+
+        StepVerifier.create(planetRepository.findByName("name")).verifyComplete();
+    }
+
+    @Test
+    public void listPlanets_ByTerrainAndClimate_IgnoresCaseAndReturnsInIdOrder() {
+
+        StepVerifier.create(saveAll().thenMany(planetRepository.findAll("jungle, rainforests", "temperate, tropical")))
+                .expectNextMatches(planet -> planet.getName().equals(YAVINIV.getName()))
+                .verifyComplete();
+
+        StepVerifier.create(planetRepository.findAll(null, null).map(Planet::getName))
+                .expectNext(TATOOINE.getName(), ALDERAAN.getName(), YAVINIV.getName())
+                .verifyComplete();
+    }
+
+    @Test
+    public void listPlanets_ById_ReturnsOnlyThoseIds() {
+
+        StepVerifier.create(saveAll().thenMany(planetRepository.findAllById(List.of(1L, 3L))).map(Planet::getName))
+                .expectNext(TATOOINE.getName(), YAVINIV.getName())
+                .verifyComplete();
+    }
+
+    @Test
+    public void removePlanet_ReturnsDeletedRows() {
+
+        StepVerifier.create(planetRepository.save(PLANET).flatMap(planet -> planetRepository.deleteById(planet.getId())))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(planetRepository.deleteById(99L))
+                .expectNext(0)
+                .verifyComplete();
+    }
+
+    // the constants carry ids, the database assigns its own from 1 in the same order; climates are stored uppercase
+    private Mono<Void> saveAll() {
+        return Flux.fromIterable(PLANETS)
+                .map(planet -> new Planet(planet.getName(), planet.getClimate().toUpperCase(), planet.getTerrain()))
+                .concatMap(planetRepository::save)
+                .then();
+    }
+}
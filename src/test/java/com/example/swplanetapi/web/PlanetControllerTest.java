@@ -1,32 +1,57 @@
 package com.example.swplanetapi.web;
 
+import com.example.swplanetapi.config.BinaryFormatsConfig;
+import com.example.swplanetapi.domain.InvalidPlanetQueryException;
+import com.example.swplanetapi.domain.PageCursor;
 import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.PlanetBatchResult;
+import com.example.swplanetapi.domain.PlanetBatchService;
+import com.example.swplanetapi.domain.PlanetIngestQueue;
+import com.example.swplanetapi.domain.PlanetIngestTicket;
+import com.example.swplanetapi.domain.PlanetPage;
 import com.example.swplanetapi.domain.PlanetService;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import static com.example.swplanetapi.common.PlanetConstants.*;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 
 @WebMvcTest(PlanetController.class)
+@Import(BinaryFormatsConfig.class)
 public class PlanetControllerTest {
 
     @Autowired
@@ -35,6 +60,10 @@ public class PlanetControllerTest {
     private ObjectMapper objectMapper;  // usado par passar o objeto para string no content
     @MockBean
     private PlanetService planetService;
+    @MockBean
+    private PlanetBatchService planetBatchService;
+    @MockBean
+    private PlanetIngestQueue planetIngestQueue;
 
 
     @Test
@@ -50,6 +79,48 @@ public class PlanetControllerTest {
 
     }
 
+    @Test
+    public void createPlanet_PreferringAsync_ReturnsAcceptedWithTicket() throws Exception {
+
+        PlanetIngestTicket ticket = new PlanetIngestTicket("ticket-1", PLANET.getName());
+        when(planetIngestQueue.submit(PLANET)).thenReturn(Optional.of(ticket));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets")
+                        .header("Prefer", "respond-async")
+                        .content(objectMapper.writeValueAsString(PLANET))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/planets/ingest/ticket-1"))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+        verify(planetService, never()).create(any());
+    }
+
+    @Test
+    public void createPlanet_PreferringAsync_WithFullQueue_ReturnsServiceUnavailable() throws Exception {
+
+        when(planetIngestQueue.submit(PLANET)).thenReturn(Optional.empty());
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets")
+                        .header("Prefer", "respond-async")
+                        .content(objectMapper.writeValueAsString(PLANET))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void ingestStatus_ByTicket_ReturnsTicketOrNotFound() throws Exception {
+
+        when(planetIngestQueue.status("ticket-1")).thenReturn(Optional.of(new PlanetIngestTicket("ticket-1", PLANET.getName())));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/ingest/ticket-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value(PLANET.getName()));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/ingest/unknown"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void createPlanet_WithInValidData_ReturnsBadRequest() throws Exception {
 
@@ -80,6 +151,64 @@ public class PlanetControllerTest {
 
     }
 
+    @Test
+    public void createPlanets_WithJsonArray_ReadsEveryPlanet() throws Exception {
+
+        List<Planet> received = mockBatch();
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets/batch")
+                        .content(objectMapper.writeValueAsString(PLANETS))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        Assertions.assertThat(received)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactlyElementsOf(PLANETS);
+    }
+
+    @Test
+    public void createPlanets_WithNdjson_ReadsEveryPlanet() throws Exception {
+
+        List<Planet> received = mockBatch();
+        String body = objectMapper.writeValueAsString(TATOOINE) + "\n" + objectMapper.writeValueAsString(ALDERAAN) + "\n";
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets/batch")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk());
+
+        Assertions.assertThat(received)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE, ALDERAAN);
+    }
+
+    @Test
+    public void createPlanets_WithMalformedEntry_HandsTheFailureToTheBatch() throws Exception {
+
+        List<Planet> received = new ArrayList<>();
+        when(planetBatchService.createAll(any())).thenAnswer(invocation -> {
+            Iterator<Planet> planets = invocation.getArgument(0);
+            received.add(planets.next());
+            Assertions.assertThatThrownBy(planets::next).isInstanceOf(RuntimeJsonMappingException.class);
+            return new PlanetBatchResult();
+        });
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/planets/batch")
+                        .content("[{\"name\": \"Hoth\"}, {\"name\": [1, 2]}]")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        Assertions.assertThat(received).extracting(Planet::getName).containsExactly("Hoth");
+    }
+
+    private List<Planet> mockBatch() {
+        List<Planet> received = new ArrayList<>();
+        when(planetBatchService.createAll(any())).thenAnswer(invocation -> {
+            Iterator<Planet> planets = invocation.getArgument(0);
+            planets.forEachRemaining(received::add);
+            return new PlanetBatchResult();
+        });
+        return received;
+    }
+
     @Test
     public void getPlanet_ByExistingId_ReturnsPlanets() throws Exception {
 
@@ -95,6 +224,49 @@ public class PlanetControllerTest {
 
     }
 
+    @Test
+    public void getPlanet_WithMatchingEtag_ReturnsNotModified() throws Exception {
+        Planet planet = new Planet(1L, "name", "climate", "terrain");
+        planet.setVersion(3L);
+        planet.setLastModified(Instant.parse("2023-07-01T10:15:30Z"));
+        when(planetService.get(1L)).thenReturn(Optional.of(planet));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "W/\"1.3\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().string(HttpHeaders.LAST_MODIFIED, "Sat, 01 Jul 2023 10:15:30 GMT"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").header(HttpHeaders.IF_NONE_MATCH, "\"1.3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").header(HttpHeaders.IF_NONE_MATCH, "\"1.2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void listPlanets_WithMatchingEtag_ReturnsNotModified() throws Exception {
+
+        when(planetService.list(null,null)).thenReturn(PLANETS);
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/planets"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        Assertions.assertThat(etag).startsWith("W/\"");
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        when(planetService.list(null,null)).thenReturn(List.of(TATOOINE, ALDERAAN));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
     @Test
     public void getPlanet_ByUnexistingId_ReturnsNotFound() throws Exception {
 
@@ -124,6 +296,23 @@ public class PlanetControllerTest {
                 .andExpect(status().isNotFound());
     }
     @Test
+    public void searchPlanets_ByPrefix_ReturnsMatches() throws Exception {
+
+        when(planetService.search("tat", 1, 5)).thenReturn(List.of(TATOOINE));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search?prefix=tat&fuzzy=1&limit=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value(TATOOINE.getName()));
+    }
+
+    @Test
+    public void searchPlanets_WithoutPrefix_ReturnsBadRequest() throws Exception {
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets/search"))
+                .andExpect(status().isBadRequest());
+    }
+    @Test
     public void listPlanets_ReturnsFilteredPlanets() throws Exception {
 
         when(planetService.list(null,null)).thenReturn(PLANETS);
@@ -139,6 +328,47 @@ public class PlanetControllerTest {
                 .andExpect(jsonPath("$[0]").value(TATOOINE));
     }
 
+    @Test
+    public void listPlanets_AsCbor_ReturnsBinaryPlanets() throws Exception {
+
+        when(planetService.list(null,null)).thenReturn(PLANETS);
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        Planet[] planets = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Planet[].class);
+        Assertions.assertThat(planets)
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactlyElementsOf(PLANETS);
+        Assertions.assertThat(result.getResponse().getContentAsByteArray().length)
+                .isLessThan(objectMapper.writeValueAsBytes(PLANETS).length);
+    }
+
+    @Test
+    public void getPlanet_AsSmile_ReturnsBinaryPlanet() throws Exception {
+
+        when(planetService.get(1L)).thenReturn(Optional.of(TATOOINE));
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/1").accept(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryFormatsConfig.APPLICATION_SMILE))
+                .andReturn();
+
+        Assertions.assertThat(new SmileMapper().readValue(result.getResponse().getContentAsByteArray(), Planet.class))
+                .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE);
+    }
+
+    @Test
+    public void listPlanets_WithoutAccept_ReturnsJson() throws Exception {
+
+        when(planetService.list(null,null)).thenReturn(PLANETS);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
     @Test
     public void listPlanets_ReturnsNoPlanets() throws Exception {
 
@@ -149,8 +379,109 @@ public class PlanetControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    public void listPlanets_WithLimit_ReturnsPageAndNextCursor() throws Exception {
+
+        String next = PageCursor.encode(ALDERAAN.getId());
+        when(planetService.listPage(null, null, null, 2)).thenReturn(new PlanetPage(List.of(TATOOINE, ALDERAAN), next));
+        when(planetService.listPage(null, null, next, 2)).thenReturn(new PlanetPage(List.of(YAVINIV), null));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", next))
+                .andExpect(jsonPath("$", hasSize(2)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?limit=2&cursor=" + next))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-Cursor"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0]").value(YAVINIV));
+    }
+
+    @Test
+    public void listPlanets_WithInvalidCursor_ReturnsBadRequest() throws Exception {
+
+        when(planetService.listPage(any(), any(), eq("invalid"), any())).thenThrow(new InvalidPlanetQueryException("Invalid cursor: invalid"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?cursor=invalid"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void listPlanets_WithPageAndSize_ReturnsPageAndTotalCount() throws Exception {
+
+        when(planetService.list(null, null, 0, 1)).thenReturn(new PageImpl<>(List.of(TATOOINE), PageRequest.of(0, 1), 3));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?page=0&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "3"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void listPlanets_ByTagsInBothPagedModes_ReturnsTheIndexedPage() throws Exception {
+
+        when(planetService.listPage("any:arid", null, null, 1))
+                .thenReturn(new PlanetPage(List.of(TATOOINE), PageCursor.encode(TATOOINE.getId())));
+        when(planetService.list("any:arid", null, 0, 1)).thenReturn(new PageImpl<>(List.of(TATOOINE), PageRequest.of(0, 1), 2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=any:arid&limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-Cursor", PageCursor.encode(TATOOINE.getId())))
+                .andExpect(jsonPath("$[0]").value(TATOOINE));
+        mockMvc.perform(MockMvcRequestBuilders.get("/planets?terrain=any:arid&page=0&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Total-Count", "2"))
+                .andExpect(jsonPath("$[0]").value(TATOOINE));
+    }
+
+    @Test
+    public void exportPlanets_ReturnsNdjson() throws Exception {
+
+        mockExport();
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String expected = objectMapper.writeValueAsString(TATOOINE) + "\n"
+                + objectMapper.writeValueAsString(ALDERAAN) + "\n"
+                + objectMapper.writeValueAsString(YAVINIV) + "\n";
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(expected));
+    }
+
+    @Test
+    public void exportPlanets_AsJson_ReturnsArray() throws Exception {
+
+        mockExport();
+
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/planets/export")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0]").value(TATOOINE));
+    }
+
+    private void mockExport() {
+        when(planetService.export(any())).thenAnswer(invocation -> {
+            Consumer<Planet> sink = invocation.getArgument(0);
+            PLANETS.forEach(sink);
+            return (long) PLANETS.size();
+        });
+    }
+
     @Test
     public void removePlanet_WithExistingId_ReturnsNoContent() throws Exception {
+        when(planetService.remove(1L)).thenReturn(true);
+
         mockMvc.perform(delete("/planets/1"))
                 .andExpect(status().isNoContent());
     }
@@ -159,11 +490,28 @@ public class PlanetControllerTest {
     public void removePlanet_WithUnexistingId_ReturnsNotFound() throws Exception {
         final Long planetId = 1L;
 
-        doThrow(new EmptyResultDataAccessException(1)).when(planetService).remove(planetId);
+        when(planetService.remove(planetId)).thenReturn(false);
 
         mockMvc.perform(delete("/planets/" + planetId))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void removePlanets_ByFilter_ReturnsDeletedCount() throws Exception {
+        when(planetService.removeAll("desert", null)).thenReturn(3);
+
+        mockMvc.perform(delete("/planets?terrain=desert"))
+                .andExpect(status().isNoContent())
+                .andExpect(header().string(PlanetController.DELETED_COUNT_HEADER, "3"));
+    }
+
+    @Test
+    public void removePlanets_WithoutFilter_ReturnsBadRequest() throws Exception {
+        when(planetService.removeAll(null, null)).thenThrow(new InvalidPlanetQueryException("A filter is required"));
+
+        mockMvc.perform(delete("/planets"))
+                .andExpect(status().isBadRequest());
+    }
+
 
 }
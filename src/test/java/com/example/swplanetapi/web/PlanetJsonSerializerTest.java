@@ -0,0 +1,47 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.Planet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+
+import java.util.List;
+
+import static com.example.swplanetapi.common.PlanetConstants.PLANET;
+import static com.example.swplanetapi.common.PlanetConstants.TATOOINE;
+
+@JsonTest
+public class PlanetJsonSerializerTest {
+
+    private final ObjectMapper beanMapper = new ObjectMapper();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void serializePlanet_WritesTheFieldsInOrder() throws Exception {
+
+        String json = objectMapper.writeValueAsString(new Planet(1L, "name", "climate", "terrain"));
+
+        Assertions.assertThat(json).isEqualTo("{\"id\":1,\"name\":\"name\",\"climate\":\"climate\",\"terrain\":\"terrain\"}");
+    }
+
+    @Test
+    public void serializePlanets_MatchesTheBeanSerializer() throws Exception {
+        List<Planet> planets = List.of(TATOOINE, PLANET, new Planet(), new Planet("quote \" and ünïcode", "c", "t"));
+
+        String json = objectMapper.writeValueAsString(planets);
+
+        Assertions.assertThat(json).isEqualTo(beanMapper.writeValueAsString(planets));
+    }
+
+    @Test
+    public void serializedPlanet_ReadsBack() throws Exception {
+
+        Planet planet = objectMapper.readValue(objectMapper.writeValueAsBytes(TATOOINE), Planet.class);
+
+        Assertions.assertThat(planet).usingRecursiveComparison().isEqualTo(TATOOINE);
+    }
+}
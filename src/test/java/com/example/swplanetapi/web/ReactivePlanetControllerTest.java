@@ -0,0 +1,154 @@
+package com.example.swplanetapi.web;
+
+import com.example.swplanetapi.domain.Planet;
+import com.example.swplanetapi.domain.ReactivePlanetService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static com.example.swplanetapi.common.PlanetConstants.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(ReactivePlanetController.class)
+@ActiveProfiles("reactive")
+public class ReactivePlanetControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @MockBean
+    private ReactivePlanetService planetService;
+
+    @Test
+    public void createPlanet_WithValidData_ReturnsCreated() {
+
+        when(planetService.create(PLANET)).thenReturn(Mono.just(PLANET));
+
+        webTestClient.post().uri("/planets").contentType(MediaType.APPLICATION_JSON).bodyValue(PLANET)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(Planet.class).value(planet -> Assertions.assertThat(planet)
+                        .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(PLANET));
+    }
+
+    @Test
+    public void createPlanet_WithInValidData_ReturnsUnprocessableEntity() {
+
+        webTestClient.post().uri("/planets").contentType(MediaType.APPLICATION_JSON).bodyValue(new Planet())
+                .exchange()
+                .expectStatus().isEqualTo(422);
+
+        webTestClient.post().uri("/planets").contentType(MediaType.APPLICATION_JSON).bodyValue(INVALID_PLANET)
+                .exchange()
+                .expectStatus().isEqualTo(422);
+    }
+
+    @Test
+    public void createPlanet_WithExistingName_ReturnsConflict() {
+
+        when(planetService.create(any())).thenReturn(Mono.error(new DataIntegrityViolationException("duplicate")));
+
+        webTestClient.post().uri("/planets").contentType(MediaType.APPLICATION_JSON).bodyValue(PLANET)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void getPlanet_ByExistingId_ReturnsPlanet() {
+
+        when(planetService.get(1L)).thenReturn(Mono.just(TATOOINE));
+
+        webTestClient.get().uri("/planets/1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Planet.class).value(planet -> Assertions.assertThat(planet)
+                        .usingRecursiveComparison().ignoringFields(GENERATED_FIELDS).isEqualTo(TATOOINE));
+    }
+
+    @Test
+    public void getPlanet_WithMatchingEtag_ReturnsNotModified() {
+
+        when(planetService.get(1L)).thenReturn(Mono.just(TATOOINE));
+
+        webTestClient.get().uri("/planets/1").ifNoneMatch("\"1.0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void getPlanet_ByUnexistingId_ReturnsNotFound() {
+
+        when(planetService.get(1L)).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/planets/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void getPlanet_ByUnexistingName_ReturnsNotFound() {
+
+        when(planetService.getByName("name")).thenReturn(Mono.empty());
+
+        webTestClient.get().uri("/planets/name/name")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void listPlanets_ReturnsFilteredPlanets() {
+
+        when(planetService.list(TATOOINE.getTerrain(), TATOOINE.getClimate())).thenReturn(Flux.just(TATOOINE));
+
+        webTestClient.get().uri("/planets?terrain={terrain}&climate={climate}", TATOOINE.getTerrain(), TATOOINE.getClimate())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Planet.class).value(planets -> Assertions.assertThat(planets)
+                        .usingRecursiveFieldByFieldElementComparatorIgnoringFields(GENERATED_FIELDS).containsExactly(TATOOINE));
+    }
+
+    @Test
+    public void listPlanets_AsNdjson_StreamsOnePlanetPerLine() {
+
+        when(planetService.list(null, null)).thenReturn(Flux.fromIterable(PLANETS));
+
+        Flux<Planet> planets = webTestClient.get().uri("/planets").accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(Planet.class).getResponseBody();
+
+        StepVerifier.create(planets).expectNextSequence(PLANETS).verifyComplete();
+    }
+
+    @Test
+    public void removePlanet_WithExistingId_ReturnsNoContent() {
+
+        when(planetService.remove(1L)).thenReturn(Mono.empty());
+
+        webTestClient.delete().uri("/planets/1")
+                .exchange()
+                .expectStatus().isNoContent();
+    }
+
+    @Test
+    public void removePlanet_WithUnexistingId_ReturnsNotFound() {
+
+        when(planetService.remove(1L)).thenReturn(Mono.error(new EmptyResultDataAccessException(1)));
+
+        webTestClient.delete().uri("/planets/1")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}